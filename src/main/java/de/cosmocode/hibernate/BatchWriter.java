@@ -0,0 +1,359 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Iterator;
+
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Environment;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Writes large amounts of entities in batches.
+ * 
+ * <p>
+ *   In session mode every batch is flushed and the session is cleared afterwards,
+ *   which keeps the persistence context small and lets Hibernate use JDBC batching
+ *   if the batch size matches {@value Environment#STATEMENT_BATCH_SIZE}. In stateless mode
+ *   entities are written using a {@link StatelessSession}, which bypasses the persistence
+ *   context, cascades and interceptors altogether.
+ * </p>
+ * 
+ * <p>
+ *   If a commit interval is configured, the current transaction is committed every n batches
+ *   and a new transaction is started. {@link #finish()} writes the last batch, but leaves
+ *   the final commit to the caller. Instances are not thread-safe.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ */
+public final class BatchWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchWriter.class);
+    
+    private static final int DEFAULT_BATCH_SIZE = 50;
+    
+    private final Target target;
+    private final int batchSize;
+    private final int commitInterval;
+    
+    private final long started = System.nanoTime();
+    private long count;
+    private long batches;
+    private long commits;
+    private int pending;
+    
+    private BatchWriter(Target target, int batchSize, int commitInterval) {
+        Preconditions.checkArgument(batchSize > 0, "BatchSize must be positive, but was %s", batchSize);
+        Preconditions.checkArgument(commitInterval >= 0, 
+            "CommitInterval must not be negative, but was %s", commitInterval);
+        this.target = target;
+        this.batchSize = batchSize;
+        this.commitInterval = commitInterval;
+    }
+    
+    /**
+     * Creates a writer which uses the configured {@value Environment#STATEMENT_BATCH_SIZE}
+     * as batch size and never commits.
+     * 
+     * @param session the session to write to
+     * @return a new writer
+     */
+    public static BatchWriter of(Session session) {
+        final int configured = SessionFactoryImplementor.class.cast(
+            session.getSessionFactory()).getSettings().getJdbcBatchSize();
+        return of(session, configured > 0 ? configured : DEFAULT_BATCH_SIZE, 0);
+    }
+    
+    /**
+     * Creates a writer which flushes and clears the given session every batchSize entities.
+     * 
+     * @param session the session to write to
+     * @param batchSize the number of entities per batch
+     * @param commitInterval the number of batches per transaction, 0 to never commit
+     * @return a new writer
+     */
+    public static BatchWriter of(Session session, int batchSize, int commitInterval) {
+        return new BatchWriter(new SessionTarget(Preconditions.checkNotNull(session, "Session")), 
+            batchSize, commitInterval);
+    }
+    
+    /**
+     * Creates a writer which writes using the given stateless session.
+     * 
+     * @param session the stateless session to write to
+     * @param batchSize the number of entities per batch
+     * @param commitInterval the number of batches per transaction, 0 to never commit
+     * @return a new writer
+     */
+    public static BatchWriter stateless(StatelessSession session, int batchSize, int commitInterval) {
+        return new BatchWriter(new StatelessTarget(Preconditions.checkNotNull(session, "Session")), 
+            batchSize, commitInterval);
+    }
+    
+    /**
+     * Saves the given new entity.
+     * 
+     * @param entity the entity to save
+     */
+    public void save(Object entity) {
+        target.save(entity);
+        written();
+    }
+    
+    /**
+     * Updates the given detached entity.
+     * 
+     * @param entity the entity to update
+     */
+    public void update(Object entity) {
+        target.update(entity);
+        written();
+    }
+    
+    /**
+     * Saves all given new entities.
+     * 
+     * @param entities the entities to save
+     */
+    public void saveAll(Iterable<?> entities) {
+        saveAll(entities.iterator());
+    }
+    
+    /**
+     * Saves all remaining new entities of the given iterator.
+     * 
+     * @param entities the entities to save
+     */
+    public void saveAll(Iterator<?> entities) {
+        while (entities.hasNext()) {
+            save(entities.next());
+        }
+    }
+    
+    /**
+     * Updates all given detached entities.
+     * 
+     * @param entities the entities to update
+     */
+    public void updateAll(Iterable<?> entities) {
+        updateAll(entities.iterator());
+    }
+    
+    /**
+     * Updates all remaining detached entities of the given iterator.
+     * 
+     * @param entities the entities to update
+     */
+    public void updateAll(Iterator<?> entities) {
+        while (entities.hasNext()) {
+            update(entities.next());
+        }
+    }
+    
+    private void written() {
+        count++;
+        pending++;
+        if (pending == batchSize) {
+            batch();
+            if (commitInterval > 0 && batches % commitInterval == 0) {
+                if (target.commit()) {
+                    commits++;
+                    LOG.debug("Committed after {} entities, {} entities/s", count, getRowsPerSecond());
+                } else {
+                    LOG.debug("No active transaction to commit after {} entities", count);
+                }
+            }
+        }
+    }
+    
+    private void batch() {
+        target.flush();
+        batches++;
+        pending = 0;
+    }
+    
+    /**
+     * Writes the last, possibly incomplete, batch. The current transaction is not committed.
+     */
+    public void finish() {
+        if (pending > 0) batch();
+        LOG.debug("Wrote {} entities in {} batches and {} commits, {} entities/s", 
+            new Object[] {count, batches, commits, getRowsPerSecond()});
+    }
+    
+    /**
+     * Returns the number of entities written so far.
+     * 
+     * @return the number of written entities
+     */
+    public long getCount() {
+        return count;
+    }
+    
+    /**
+     * Returns the number of completed batches.
+     * 
+     * @return the number of batches
+     */
+    public long getBatches() {
+        return batches;
+    }
+    
+    /**
+     * Returns the number of intermediate commits. Commit intervals reached without
+     * an active transaction are not counted.
+     * 
+     * @return the number of commits
+     */
+    public long getCommits() {
+        return commits;
+    }
+    
+    /**
+     * Returns the time elapsed since this writer has been created.
+     * 
+     * @return the elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return (System.nanoTime() - started) / 1000000L;
+    }
+    
+    /**
+     * Returns the average throughput since this writer has been created.
+     * 
+     * @return the number of written entities per second
+     */
+    public double getRowsPerSecond() {
+        final long elapsed = System.nanoTime() - started;
+        return elapsed == 0 ? 0 : count * 1000000000.0 / elapsed;
+    }
+    
+    /**
+     * Abstracts the differences between {@link Session}s and {@link StatelessSession}s.
+     *
+     * @author Willi Schoenborn
+     */
+    private interface Target {
+        
+        void save(Object entity);
+        
+        void update(Object entity);
+        
+        void flush();
+        
+        /**
+         * Commits the current transaction, if active, and starts a new one.
+         * 
+         * @return true if a transaction has been committed, false otherwise
+         */
+        boolean commit();
+        
+    }
+    
+    /**
+     * {@link Target} implementation for {@link Session}s.
+     *
+     * @author Willi Schoenborn
+     */
+    private static final class SessionTarget implements Target {
+        
+        private final Session session;
+        
+        public SessionTarget(Session session) {
+            this.session = session;
+        }
+        
+        @Override
+        public void save(Object entity) {
+            session.save(entity);
+        }
+        
+        @Override
+        public void update(Object entity) {
+            session.update(entity);
+        }
+        
+        @Override
+        public void flush() {
+            session.flush();
+            session.clear();
+        }
+        
+        @Override
+        public boolean commit() {
+            final Transaction transaction = session.getTransaction();
+            if (transaction.isActive()) {
+                transaction.commit();
+                session.beginTransaction();
+                return true;
+            } else {
+                return false;
+            }
+        }
+        
+    }
+    
+    /**
+     * {@link Target} implementation for {@link StatelessSession}s.
+     *
+     * @author Willi Schoenborn
+     */
+    private static final class StatelessTarget implements Target {
+        
+        private final StatelessSession session;
+        
+        public StatelessTarget(StatelessSession session) {
+            this.session = session;
+        }
+        
+        @Override
+        public void save(Object entity) {
+            session.insert(entity);
+        }
+        
+        @Override
+        public void update(Object entity) {
+            session.update(entity);
+        }
+        
+        @Override
+        public void flush() {
+            // stateless sessions write immediately
+        }
+        
+        @Override
+        public boolean commit() {
+            final Transaction transaction = session.getTransaction();
+            if (transaction.isActive()) {
+                transaction.commit();
+                session.beginTransaction();
+                return true;
+            } else {
+                return false;
+            }
+        }
+        
+    }
+    
+}
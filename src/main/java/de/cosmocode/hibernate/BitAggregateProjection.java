@@ -0,0 +1,197 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.EnumSet;
+import java.util.Properties;
+import java.util.Set;
+
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.SimpleProjection;
+import org.hibernate.type.CustomType;
+import org.hibernate.type.Type;
+import org.hibernate.usertype.ParameterizedType;
+import org.hibernate.usertype.UserType;
+import org.hibernate.util.ReflectHelper;
+
+import com.google.common.base.Objects;
+
+import de.cosmocode.commons.Enums;
+
+/**
+ * A {@link Projection} which aggregates a bitset property using a bitwise or/and.
+ * 
+ * <p>
+ *   If an enum type is given, only its constants are aggregated and the result
+ *   is decoded into an {@link EnumSet}, otherwise all 64 bits are aggregated and the
+ *   result is a {@link Long}. Dialects without native bitwise aggregates are emulated,
+ *   see {@link BitwiseDialect#aggregate(boolean, String, int)}.
+ * </p>
+ * 
+ * <p>
+ *   MySQL returns the aggregates as unsigned 64-bit values, which exceed the range of
+ *   {@code long} if the highest bit is set. Results are therefore read as {@link BigDecimal}s
+ *   and narrowed to their lower 64 bits, see {@link UnsignedType}.
+ * </p>
+ *
+ * @see BitwiseProjections
+ *
+ * @author Willi Schoenborn
+ */
+public class BitAggregateProjection extends SimpleProjection {
+
+    private static final long serialVersionUID = -3085839233599006423L;
+    
+    private final String propertyName;
+    private final boolean union;
+    private final Class<? extends Enum<?>> type;
+    
+    protected BitAggregateProjection(String propertyName, boolean union, Class<? extends Enum<?>> type) {
+        this.propertyName = propertyName;
+        this.union = union;
+        this.type = type;
+    }
+    
+    @Override
+    public String toSqlString(Criteria criteria, int position, CriteriaQuery criteriaQuery) 
+        throws HibernateException {
+        final String column = criteriaQuery.getColumn(criteria, propertyName);
+        final int width = type == null ? Long.SIZE : type.getEnumConstants().length;
+        final BitwiseDialect dialect = BitwiseDialect.of(criteriaQuery.getFactory());
+        return dialect.aggregate(union, column, width) + " as y" + position + "_";
+    }
+    
+    @Override
+    public Type[] getTypes(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+        final Properties parameters = new Properties();
+        if (type != null) {
+            parameters.setProperty(UnsignedType.ENUM_CLASS, type.getName());
+        }
+        return new Type[] {new CustomType(UnsignedType.class, parameters)};
+    }
+    
+    @Override
+    public String toString() {
+        return (union ? "bit_or(" : "bit_and(") + propertyName + ")";
+    }
+    
+    /**
+     * A read-only {@link UserType} for aggregated bitsets, which reads unsigned 64-bit values
+     * as {@link BigDecimal}s and narrows them to {@code long}, i.e. {@code 2^64 - 1} becomes {@code -1}.
+     * The narrowed value is decoded into an {@link EnumSet} if the {@value #ENUM_CLASS}
+     * parameter is set.
+     *
+     * @author Willi Schoenborn
+     */
+    public static final class UnsignedType implements UserType, ParameterizedType {
+        
+        /**
+         * The name of the parameter holding the fully qualified name of the enum type.
+         */
+        public static final String ENUM_CLASS = "enumClass";
+        
+        private static final int[] SQL_TYPES = {Types.NUMERIC};
+        
+        private Class<?> type;
+        
+        @Override
+        public void setParameterValues(Properties parameters) {
+            final String name = parameters == null ? null : parameters.getProperty(ENUM_CLASS);
+            try {
+                type = name == null ? null : ReflectHelper.classForName(name);
+            } catch (ClassNotFoundException e) {
+                throw new HibernateException("enum class " + name + " not found", e);
+            }
+        }
+        
+        @Override
+        public int[] sqlTypes() {
+            return SQL_TYPES;
+        }
+        
+        @Override
+        public Class<?> returnedClass() {
+            return type == null ? Long.class : EnumSet.class;
+        }
+        
+        @Override
+        public Object nullSafeGet(ResultSet resultSet, String[] names, Object owner) 
+            throws HibernateException, SQLException {
+            final BigDecimal value = resultSet.getBigDecimal(names[0]);
+            if (value == null) return null;
+            final long flag = value.toBigInteger().longValue();
+            return type == null ? Long.valueOf(flag) : decode(type, flag);
+        }
+        
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static Set<?> decode(Class type, long flag) {
+            return Enums.decode(type, flag);
+        }
+        
+        @Override
+        public void nullSafeSet(PreparedStatement statement, Object value, int index) 
+            throws HibernateException, SQLException {
+            throw new UnsupportedOperationException("aggregated bitsets can't be bound");
+        }
+        
+        @Override
+        public boolean equals(Object x, Object y) {
+            return Objects.equal(x, y);
+        }
+        
+        @Override
+        public int hashCode(Object x) {
+            return x.hashCode();
+        }
+        
+        @Override
+        public Object deepCopy(Object value) {
+            return value instanceof EnumSet<?> ? EnumSet.class.cast(value).clone() : value;
+        }
+        
+        @Override
+        public boolean isMutable() {
+            return type != null;
+        }
+        
+        @Override
+        public Serializable disassemble(Object value) {
+            return (Serializable) deepCopy(value);
+        }
+        
+        @Override
+        public Object assemble(Serializable cached, Object owner) {
+            return deepCopy(cached);
+        }
+        
+        @Override
+        public Object replace(Object original, Object target, Object owner) {
+            return deepCopy(original);
+        }
+        
+    }
+    
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+/**
+ * Defines how a bitset column is compared to a mask.
+ * 
+ * @see BitwiseRestrictions
+ *
+ * @author Willi Schoenborn
+ */
+public enum BitMatchMode {
+    
+    /**
+     * At least one bit of the mask is set.
+     */
+    ANY {
+        
+        @Override
+        public String toSqlString(BitwiseDialect dialect, String column) {
+            return "(" + dialect.and(column, "?") + " <> 0)";
+        }
+        
+        @Override
+        public long[] values(long mask) {
+            return new long[] {mask};
+        }
+        
+    },
+    
+    /**
+     * All bits of the mask are set.
+     */
+    ALL {
+        
+        @Override
+        public String toSqlString(BitwiseDialect dialect, String column) {
+            return "(" + dialect.and(column, "?") + " = ?)";
+        }
+        
+        @Override
+        public long[] values(long mask) {
+            return new long[] {mask, mask};
+        }
+        
+    },
+    
+    /**
+     * No bit of the mask is set.
+     */
+    NONE {
+        
+        @Override
+        public String toSqlString(BitwiseDialect dialect, String column) {
+            return "(" + dialect.and(column, "?") + " = 0)";
+        }
+        
+        @Override
+        public long[] values(long mask) {
+            return new long[] {mask};
+        }
+        
+    },
+    
+    /**
+     * Exactly the bits of the mask are set.
+     */
+    EXACT {
+        
+        @Override
+        public String toSqlString(BitwiseDialect dialect, String column) {
+            return column + " = ?";
+        }
+        
+        @Override
+        public long[] values(long mask) {
+            return new long[] {mask};
+        }
+        
+    };
+    
+    /**
+     * Renders the comparison of the given column using parameter placeholders.
+     * 
+     * @param dialect the bitwise dialect
+     * @param column the column
+     * @return the sql fragment
+     */
+    public abstract String toSqlString(BitwiseDialect dialect, String column);
+    
+    /**
+     * Produces the values which have to be bound to the placeholders
+     * rendered by {@link #toSqlString(BitwiseDialect, String)}.
+     * 
+     * @param mask the mask
+     * @return the bind values
+     */
+    public abstract long[] values(long mask);
+    
+}
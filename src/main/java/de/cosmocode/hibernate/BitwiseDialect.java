@@ -0,0 +1,169 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import org.hibernate.dialect.DB2Dialect;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.HSQLDialect;
+import org.hibernate.dialect.Oracle8iDialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Renders bitwise sql operations for a specific {@link Dialect}.
+ * 
+ * <p>
+ *   Oracle, H2, HSQLDB and DB2 don't support the {@code &} operator and require
+ *   the {@code bitand} function instead, every other database uses the operator.
+ *   The same applies to {@code |} and {@code bitor}, except for Oracle which lacks
+ *   a bitwise or and uses {@code a + b - bitand(a, b)} instead.
+ *   MySQL and PostgreSQL support the {@code bit_or} and {@code bit_and} aggregates,
+ *   which are emulated bit by bit on every other database.
+ *   Instances are resolved once per {@link SessionFactoryImplementor}, see {@link CriteriaDialect}.
+ * </p>
+ *
+ * @see BitwiseRestrictions
+ *
+ * @author Willi Schoenborn
+ */
+public final class BitwiseDialect {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BitwiseDialect.class);
+    
+    private final boolean function;
+    private final boolean emulatedOr;
+    private final boolean aggregates;
+    
+    private BitwiseDialect(boolean function, boolean emulatedOr, boolean aggregates) {
+        this.function = function;
+        this.emulatedOr = emulatedOr;
+        this.aggregates = aggregates;
+    }
+    
+    /**
+     * Resolves the bitwise dialect of the given factory.
+     * 
+     * @param factory the session factory
+     * @return the cached bitwise dialect of the factory's dialect
+     */
+    public static BitwiseDialect of(SessionFactoryImplementor factory) {
+        return CriteriaDialect.of(factory).getBitwise();
+    }
+    
+    /**
+     * Resolves the bitwise dialect of the given dialect.
+     * 
+     * @param dialect the dialect
+     * @return the matching bitwise dialect
+     */
+    // Oracle9Dialect is deprecated, but still in use
+    @SuppressWarnings("deprecation")
+    public static BitwiseDialect of(Dialect dialect) {
+        final boolean oracle = dialect instanceof Oracle8iDialect || 
+            dialect instanceof org.hibernate.dialect.Oracle9Dialect;
+        final boolean function = oracle || 
+            dialect instanceof H2Dialect || dialect instanceof HSQLDialect || dialect instanceof DB2Dialect;
+        final boolean aggregates = dialect instanceof MySQLDialect || dialect instanceof PostgreSQLDialect;
+        final BitwiseDialect resolved = new BitwiseDialect(function, oracle, aggregates);
+        LOG.debug("Resolved {} for {}", resolved, dialect);
+        return resolved;
+    }
+    
+    /**
+     * Renders a bitwise and of both operands.
+     * 
+     * @param left the left operand, e.g. a column
+     * @param right the right operand, e.g. a parameter placeholder
+     * @return the sql expression
+     */
+    public String and(String left, String right) {
+        if (function) {
+            return "bitand(" + left + ", " + right + ")";
+        } else {
+            return "(" + left + " & " + right + ")";
+        }
+    }
+    
+    /**
+     * Renders a bitwise or of both operands.
+     * 
+     * <p>
+     *   Note: The emulation used on Oracle renders both operands twice,
+     *   use named parameters or literals as operands.
+     * </p>
+     * 
+     * @param left the left operand, e.g. a column
+     * @param right the right operand, e.g. a named parameter
+     * @return the sql expression
+     */
+    public String or(String left, String right) {
+        if (emulatedOr) {
+            return "(" + left + " + " + right + " - " + and(left, right) + ")";
+        } else if (function) {
+            return "bitor(" + left + ", " + right + ")";
+        } else {
+            return "(" + left + " | " + right + ")";
+        }
+    }
+    
+    /**
+     * Renders a bitwise or/and aggregate over the given column.
+     * 
+     * @param union true for a bitwise or, false for a bitwise and
+     * @param column the column to aggregate
+     * @param width the number of bits which have to be considered by the emulation
+     * @return the sql expression
+     */
+    public String aggregate(boolean union, String column, int width) {
+        if (aggregates) {
+            return (union ? "bit_or(" : "bit_and(") + column + ")";
+        }
+        
+        // sum of max(bit) per bit for "or", sum of min(bit) per bit for "and"
+        final StringBuilder builder = new StringBuilder("(");
+        for (int i = 0; i < width; i++) {
+            if (i > 0) builder.append(" + ");
+            final long bit = 1L << i;
+            // the sign bit is negative, so min and max are swapped
+            final boolean max = union == bit > 0;
+            builder.append(max ? "max(" : "min(").append(and(column, literal(bit))).append(")");
+        }
+        return builder.append(")").toString();
+    }
+    
+    /**
+     * Renders the given value as a sql literal of type bigint. {@link Long#MIN_VALUE}
+     * is rendered as an expression, because databases like HSQLDB parse its literal
+     * as the negation of a decimal, which can't be used as a bitwise operand.
+     * 
+     * @param value the value
+     * @return the sql literal
+     */
+    public static String literal(long value) {
+        return value == Long.MIN_VALUE ? "(" + (Long.MIN_VALUE + 1) + " - 1)" : Long.toString(value);
+    }
+    
+    @Override
+    public String toString() {
+        return "BitwiseDialect[" + (function ? "bitand" : "&") + (aggregates ? ", bit_or/bit_and" : "") + "]";
+    }
+    
+}
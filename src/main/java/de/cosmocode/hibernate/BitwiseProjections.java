@@ -0,0 +1,99 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.Projections;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A utility class similiar to {@link Projections} for bitset properties.
+ *
+ * @author Willi Schoenborn
+ */
+public final class BitwiseProjections {
+
+    private BitwiseProjections() {
+        
+    }
+    
+    /**
+     * A bitwise or of the named property, i.e. the union of all 64 bits.
+     * The result is a {@link Long}.
+     * 
+     * @param propertyName the name of the bitset property
+     * @return a new {@link Projection}
+     */
+    public static Projection bitOr(String propertyName) {
+        return new BitAggregateProjection(propertyName, true, null);
+    }
+    
+    /**
+     * A bitwise or of the named enumset property, i.e. the union of all flags.
+     * The result is an {@link java.util.EnumSet} of the given type.
+     * 
+     * @param <E> the generic enum type
+     * @param propertyName the name of the bitset property
+     * @param type the enum type of the property
+     * @return a new {@link Projection}
+     * @throws NullPointerException if type is null
+     */
+    public static <E extends Enum<E>> Projection bitOr(String propertyName, Class<E> type) {
+        return new BitAggregateProjection(propertyName, true, Preconditions.checkNotNull(type, "Type"));
+    }
+    
+    /**
+     * A bitwise and of the named property, i.e. the intersection of all 64 bits.
+     * The result is a {@link Long}.
+     * 
+     * @param propertyName the name of the bitset property
+     * @return a new {@link Projection}
+     */
+    public static Projection bitAnd(String propertyName) {
+        return new BitAggregateProjection(propertyName, false, null);
+    }
+    
+    /**
+     * A bitwise and of the named enumset property, i.e. the intersection of all flags.
+     * The result is an {@link java.util.EnumSet} of the given type.
+     * 
+     * @param <E> the generic enum type
+     * @param propertyName the name of the bitset property
+     * @param type the enum type of the property
+     * @return a new {@link Projection}
+     * @throws NullPointerException if type is null
+     */
+    public static <E extends Enum<E>> Projection bitAnd(String propertyName, Class<E> type) {
+        return new BitAggregateProjection(propertyName, false, Preconditions.checkNotNull(type, "Type"));
+    }
+    
+    /**
+     * Counts the rows having each flag of the named property set, in one pass.
+     * 
+     * @param <E> the generic enum type
+     * @param propertyName the name of the bitset property
+     * @param type the enum type of the property
+     * @return a new {@link FlagHistogramProjection}
+     * @throws NullPointerException if propertyName or type is null
+     * @throws IllegalArgumentException if type has more than 64 constants
+     */
+    public static <E extends Enum<E>> FlagHistogramProjection<E> flagHistogram(String propertyName, Class<E> type) {
+        return new FlagHistogramProjection<E>(propertyName, type);
+    }
+    
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import org.hibernate.Criteria;
+import org.hibernate.EntityMode;
+import org.hibernate.Hibernate;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.engine.TypedValue;
+
+/**
+ * A {@link Criterion} which compares a bitset property to a mask
+ * using the bitwise operations of the current dialect.
+ * 
+ * @see BitwiseRestrictions
+ * @see BitwiseDialect
+ *
+ * @author Willi Schoenborn
+ */
+public class BitwiseRestriction implements Criterion {
+
+    private static final long serialVersionUID = -4367395393154416946L;
+    
+    private final String propertyName;
+    private final BitMatchMode matchMode;
+    private final long mask;
+    
+    protected BitwiseRestriction(String propertyName, BitMatchMode matchMode, long mask) {
+        this.propertyName = propertyName;
+        this.matchMode = matchMode;
+        this.mask = mask;
+    }
+    
+    @Override
+    public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+        final String[] columns = criteriaQuery.getColumnsUsingProjection(criteria, propertyName);
+        if (columns.length != 1) {
+            throw new HibernateException("bitwise restrictions may only be used with single-column properties");
+        }
+        return matchMode.toSqlString(BitwiseDialect.of(criteriaQuery.getFactory()), columns[0]);
+    }
+    
+    // unless a new api is provided
+    @SuppressWarnings("deprecation")
+    @Override
+    public TypedValue[] getTypedValues(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+        final long[] values = matchMode.values(mask);
+        final TypedValue[] typedValues = new TypedValue[values.length];
+        for (int i = 0; i < values.length; i++) {
+            typedValues[i] = new TypedValue(Hibernate.LONG, Long.valueOf(values[i]), EntityMode.POJO);
+        }
+        return typedValues;
+    }
+    
+    @Override
+    public String toString() {
+        return propertyName + " bit " + matchMode + " " + mask;
+    }
+    
+}
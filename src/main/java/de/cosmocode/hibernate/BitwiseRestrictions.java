@@ -0,0 +1,78 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
+
+/**
+ * A utility class similiar to {@link Restrictions} for bitset properties
+ * which works with every {@link BitwiseDialect}.
+ *
+ * @author Willi Schoenborn
+ */
+public final class BitwiseRestrictions {
+
+    private BitwiseRestrictions() {
+        
+    }
+    
+    /**
+     * Apply a "contains any" constraint to the named bitset property.
+     * 
+     * @param propertyName the name of the property the constraint should be applied to
+     * @param mask the bits of which at least one should be set
+     * @return a new {@link Criterion}
+     */
+    public static Criterion containsAny(String propertyName, long mask) {
+        return new BitwiseRestriction(propertyName, BitMatchMode.ANY, mask);
+    }
+    
+    /**
+     * Apply a "contains all" constraint to the named bitset property.
+     * 
+     * @param propertyName the name of the property the constraint should be applied to
+     * @param mask the bits which should all be set
+     * @return a new {@link Criterion}
+     */
+    public static Criterion containsAll(String propertyName, long mask) {
+        return new BitwiseRestriction(propertyName, BitMatchMode.ALL, mask);
+    }
+    
+    /**
+     * Apply a "none" constraint to the named bitset property.
+     * 
+     * @param propertyName the name of the property the constraint should be applied to
+     * @param mask the bits which should not be set
+     * @return a new {@link Criterion}
+     */
+    public static Criterion none(String propertyName, long mask) {
+        return new BitwiseRestriction(propertyName, BitMatchMode.NONE, mask);
+    }
+    
+    /**
+     * Apply an "exact" constraint to the named bitset property.
+     * 
+     * @param propertyName the name of the property the constraint should be applied to
+     * @param mask the bits which should be set, all other bits should not be set
+     * @return a new {@link Criterion}
+     */
+    public static Criterion exact(String propertyName, long mask) {
+        return new BitwiseRestriction(propertyName, BitMatchMode.EXACT, mask);
+    }
+    
+}
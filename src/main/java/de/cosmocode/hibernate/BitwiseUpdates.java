@@ -0,0 +1,273 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.cosmocode.hibernate;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.apache.commons.lang.StringUtils;
+import org.hibernate.HibernateException;
+import org.hibernate.SQLQuery;
+import org.hibernate.Session;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Projections;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.LoadQueryInfluencers;
+import org.hibernate.engine.QueryParameters;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.impl.CriteriaImpl;
+import org.hibernate.loader.criteria.CriteriaJoinWalker;
+import org.hibernate.loader.criteria.CriteriaQueryTranslator;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import de.cosmocode.commons.Enums;
+
+/**
+ * Atomic in-database updates of bitset properties, e.g. properties mapped
+ * using {@link EnumSetUserType}.
+ * 
+ * <p>
+ *   Instead of loading, modifying and flushing every entity, the flags are set
+ *   using {@code column = column | :mask} and cleared using {@code column = column & :mask}
+ *   (binding the complement of the mask), rendered by {@link BitwiseDialect}.
+ *   Concurrent writers modifying other flags of the same rows don't interfere and
+ *   optimistic locking is not involved at all.
+ * </p>
+ * 
+ * <p>
+ *   The update is issued as a single statement which selects the rows using the given criteria
+ *   as a subquery:
+ *   <pre>
+ *     update my_table set my_column = (my_column | ?) where id in (select this_.id from my_table this_ where ...)
+ *   </pre>
+ *   MySQL can't update a table selected in a subquery, so on MySQL the identifiers of all
+ *   matching rows are selected first and the updates are issued in chunks of {@link #CHUNK_SIZE}
+ *   identifiers. Session filters are ignored, like in every other bulk operation.
+ * </p>
+ * 
+ * <p>
+ *   Like every bulk operation, the update bypasses the session: the second-level cache
+ *   region of the entity is evicted, but entities already loaded by the current session
+ *   are stale and versions are not incremented.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ */
+public final class BitwiseUpdates {
+
+    public static final int CHUNK_SIZE = 500;
+    
+    private static final Logger LOG = LoggerFactory.getLogger(BitwiseUpdates.class);
+    
+    private BitwiseUpdates() {
+        
+    }
+    
+    /**
+     * Sets all bits of mask in the named property of all entities matching the given criteria.
+     * 
+     * @param session the current session
+     * @param criteria the criteria selecting the entities to update, will not be modified
+     * @param propertyName the name of the bitset property
+     * @param mask the bits to set
+     * @return the number of updated rows
+     * @throws NullPointerException if session, criteria or propertyName is null
+     * @throws IllegalArgumentException if criteria limits its results using max or first results
+     * @throws HibernateException if the property can't be updated in bulk
+     */
+    public static int set(Session session, DetachedCriteria criteria, String propertyName, long mask) {
+        return update(session, criteria, propertyName, mask, true);
+    }
+    
+    /**
+     * Adds all given flags to the named property of all entities matching the given criteria.
+     * 
+     * @param <E> the generic enum type
+     * @param session the current session
+     * @param criteria the criteria selecting the entities to update, will not be modified
+     * @param propertyName the name of the bitset property
+     * @param flags the flags to add
+     * @return the number of updated rows
+     * @throws NullPointerException if session, criteria, propertyName or flags is null
+     * @throws IllegalArgumentException if criteria limits its results using max or first results
+     * @throws HibernateException if the property can't be updated in bulk
+     */
+    public static <E extends Enum<E>> int set(Session session, DetachedCriteria criteria, 
+        String propertyName, Set<E> flags) {
+        Preconditions.checkNotNull(flags, "Flags");
+        return update(session, criteria, propertyName, Enums.encode(flags), true);
+    }
+    
+    /**
+     * Clears all bits of mask in the named property of all entities matching the given criteria.
+     * 
+     * @param session the current session
+     * @param criteria the criteria selecting the entities to update, will not be modified
+     * @param propertyName the name of the bitset property
+     * @param mask the bits to clear
+     * @return the number of updated rows
+     * @throws NullPointerException if session, criteria or propertyName is null
+     * @throws IllegalArgumentException if criteria limits its results using max or first results
+     * @throws HibernateException if the property can't be updated in bulk
+     */
+    public static int clear(Session session, DetachedCriteria criteria, String propertyName, long mask) {
+        return update(session, criteria, propertyName, mask, false);
+    }
+    
+    /**
+     * Removes all given flags from the named property of all entities matching the given criteria.
+     * 
+     * @param <E> the generic enum type
+     * @param session the current session
+     * @param criteria the criteria selecting the entities to update, will not be modified
+     * @param propertyName the name of the bitset property
+     * @param flags the flags to remove
+     * @return the number of updated rows
+     * @throws NullPointerException if session, criteria, propertyName or flags is null
+     * @throws IllegalArgumentException if criteria limits its results using max or first results
+     * @throws HibernateException if the property can't be updated in bulk
+     */
+    public static <E extends Enum<E>> int clear(Session session, DetachedCriteria criteria, 
+        String propertyName, Set<E> flags) {
+        Preconditions.checkNotNull(flags, "Flags");
+        return update(session, criteria, propertyName, Enums.encode(flags), false);
+    }
+    
+    private static int update(Session session, DetachedCriteria criteria, String propertyName, 
+        long mask, boolean set) {
+        Preconditions.checkNotNull(session, "Session");
+        Preconditions.checkNotNull(criteria, "Criteria");
+        Preconditions.checkNotNull(propertyName, "PropertyName");
+        
+        // getExecutableCriteria binds the shared instance, so we work on a copy
+        final DetachedCriteria copy = DetachedCriteria.class.cast(SerializationUtils.clone(criteria));
+        final CriteriaImpl executable = CriteriaImpl.class.cast(copy.getExecutableCriteria(session));
+        Preconditions.checkArgument(executable.getMaxResults() == null && executable.getFirstResult() == null,
+            "Criteria must not limit its results, the update affects all matching rows");
+        final String entityName = executable.getEntityOrClassName();
+        
+        final SessionFactoryImplementor factory = SessionFactoryImplementor.class.cast(session.getSessionFactory());
+        final ClassMetadata metadata = factory.getClassMetadata(entityName);
+        if (!(metadata instanceof AbstractEntityPersister)) {
+            throw new HibernateException("no entity persister found for " + entityName);
+        }
+        final AbstractEntityPersister persister = AbstractEntityPersister.class.cast(metadata);
+        
+        final String[] columns = persister.getPropertyColumnNames(propertyName);
+        if (columns.length != 1) {
+            throw new HibernateException("bulk bit updates require a single-column property, " + propertyName);
+        }
+        final String table = persister.getSubclassTableName(persister.getSubclassPropertyTableNumber(propertyName));
+        if (!table.equals(persister.getRootTableName())) {
+            throw new HibernateException("bulk bit updates require a property of the root table, " + propertyName);
+        }
+        final String[] keys = persister.getIdentifierColumnNames();
+        if (keys.length != 1) {
+            throw new HibernateException("bulk bit updates don't support composite identifiers");
+        }
+        
+        final BitwiseDialect bitwise = BitwiseDialect.of(factory);
+        final String column = columns[0];
+        final long value = set ? mask : ~mask;
+        
+        executable.setProjection(Projections.id());
+        
+        final int updated;
+        if (factory.getDialect() instanceof MySQLDialect) {
+            final String expression = set ? bitwise.or(column, ":mask") : bitwise.and(column, ":mask");
+            final String sql = "update " + table + " set " + column + " = " + expression + 
+                " where " + keys[0] + " in (:ids)";
+            updated = updateInChunks(session, executable, persister, sql, value);
+        } else {
+            final String expression = set ? bitwise.or(column, "?") : bitwise.and(column, "?");
+            final String sql = "update " + table + " set " + column + " = " + expression + " where " + keys[0];
+            // the emulated or renders the mask twice
+            final int masks = StringUtils.countMatches(expression, "?");
+            updated = updateUsingSubquery(session, executable, persister, sql, masks, value);
+        }
+        
+        factory.getCache().evictEntityRegion(entityName);
+        LOG.debug("Updated {} rows of {}", Integer.valueOf(updated), entityName);
+        return updated;
+    }
+    
+    private static int updateUsingSubquery(Session session, CriteriaImpl executable, 
+        AbstractEntityPersister persister, String update, int masks, long value) {
+        final String entityName = persister.getEntityName();
+        final SessionFactoryImplementor factory = persister.getFactory();
+        
+        // orders are useless in a subquery and rejected by some databases
+        final Iterator<?> orderings = executable.iterateOrderings();
+        while (orderings.hasNext()) {
+            orderings.next();
+            orderings.remove();
+        }
+        
+        final CriteriaQueryTranslator translator = new CriteriaQueryTranslator(
+            factory, executable, entityName, CriteriaQueryTranslator.ROOT_SQL_ALIAS
+        );
+        final CriteriaJoinWalker walker = new CriteriaJoinWalker(
+            persister, translator, factory, executable, entityName, LoadQueryInfluencers.NONE
+        );
+        final String sql = update + " in (" + walker.getSQLString() + ")";
+        LOG.debug("Updating {} using {}", entityName, sql);
+        
+        final SQLQuery query = session.createSQLQuery(sql);
+        query.addSynchronizedEntityName(entityName);
+        for (int i = 0; i < masks; i++) {
+            query.setLong(i, value);
+        }
+        final QueryParameters parameters = translator.getQueryParameters();
+        final Type[] types = parameters.getPositionalParameterTypes();
+        final Object[] values = parameters.getPositionalParameterValues();
+        for (int i = 0; i < values.length; i++) {
+            query.setParameter(masks + i, values[i], types[i]);
+        }
+        return query.executeUpdate();
+    }
+    
+    private static int updateInChunks(Session session, CriteriaImpl executable, 
+        AbstractEntityPersister persister, String sql, long value) {
+        final String entityName = persister.getEntityName();
+        LOG.debug("Updating {} in chunks using {}", entityName, sql);
+        
+        @SuppressWarnings("unchecked")
+        final List<Serializable> ids = executable.list();
+        
+        int updated = 0;
+        for (List<Serializable> chunk : Lists.partition(ids, CHUNK_SIZE)) {
+            updated += session.createSQLQuery(sql).
+                addSynchronizedEntityName(entityName).
+                setLong("mask", value).
+                setParameterList("ids", chunk, persister.getIdentifierType()).
+                executeUpdate();
+        }
+        return updated;
+    }
+    
+}
@@ -0,0 +1,269 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.cosmocode.hibernate;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.Oracle8iDialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.dialect.SQLServerDialect;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.MapMaker;
+
+/**
+ * The resolved {@link Dialect} strategy shared by all criteria of this library.
+ * 
+ * <p>
+ *   Instances are resolved once per {@link SessionFactoryImplementor} and hold
+ *   everything criteria would otherwise look up on every rendering, e.g. the
+ *   {@link BitwiseDialect}, the {@link FullTextDialect}, whether the database
+ *   supports {@code ilike}, the lowercase function, the maximum in-list size and
+ *   the maximum number of parameters per statement.
+ *   Additionally they cache rendered sql fragments, keyed by everything the
+ *   fragment depends on, so rendering a hot criterion amounts to a map lookup:
+ *   <pre>
+ *     final CriteriaDialect dialect = CriteriaDialect.of(criteriaQuery.getFactory());
+ *     final FragmentKey key = new FragmentKey(MyCriterion.class, columnName, matchMode, 0L);
+ *     final String cached = dialect.getFragment(key);
+ *     if (cached != null) return cached;
+ *     return dialect.putFragment(key, render(...));
+ *   </pre>
+ *   At most {@link #MAX_FRAGMENTS} fragments are cached per factory, fragments exceeding
+ *   that limit are rendered every time.
+ * </p>
+ * 
+ * <p>
+ *   Resolving the criteria dialect of a factory is lock-free, the instances are kept
+ *   in a concurrent map with weak keys.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ */
+public final class CriteriaDialect {
+
+    public static final int MAX_FRAGMENTS = 4096;
+    
+    public static final int DEFAULT_MAX_IN_LIST_SIZE = 1024;
+    
+    public static final int DEFAULT_MAX_PARAMETERS = 32767;
+    
+    private static final int ORACLE_MAX_IN_LIST_SIZE = 1000;
+    
+    private static final int MYSQL_MAX_PARAMETERS = 65535;
+    
+    private static final int ORACLE_MAX_PARAMETERS = 65535;
+    
+    private static final int SQL_SERVER_MAX_PARAMETERS = 2100;
+    
+    private static final Logger LOG = LoggerFactory.getLogger(CriteriaDialect.class);
+    
+    private static final ConcurrentMap<SessionFactoryImplementor, CriteriaDialect> CACHE = 
+        new MapMaker().weakKeys().makeMap();
+    
+    private final BitwiseDialect bitwise;
+    private final FullTextDialect fullText;
+    private final boolean ilike;
+    private final String lowercaseFunction;
+    private final int maxInListSize;
+    private final int maxParameters;
+    
+    private final ConcurrentMap<FragmentKey, String> fragments = new ConcurrentHashMap<FragmentKey, String>();
+    
+    // Oracle9Dialect is deprecated, but still in use
+    @SuppressWarnings("deprecation")
+    private CriteriaDialect(Dialect dialect) {
+        this.bitwise = BitwiseDialect.of(dialect);
+        this.fullText = FullTextDialect.of(dialect);
+        this.ilike = dialect instanceof PostgreSQLDialect;
+        this.lowercaseFunction = dialect.getLowercaseFunction();
+        final boolean oracle = dialect instanceof Oracle8iDialect || 
+            dialect instanceof org.hibernate.dialect.Oracle9Dialect;
+        this.maxInListSize = oracle ? ORACLE_MAX_IN_LIST_SIZE : DEFAULT_MAX_IN_LIST_SIZE;
+        if (dialect instanceof MySQLDialect) {
+            this.maxParameters = MYSQL_MAX_PARAMETERS;
+        } else if (oracle) {
+            this.maxParameters = ORACLE_MAX_PARAMETERS;
+        } else if (dialect instanceof SQLServerDialect) {
+            this.maxParameters = SQL_SERVER_MAX_PARAMETERS;
+        } else {
+            // PostgreSQL's jdbc driver allows 32767, which is a sane default for all others
+            this.maxParameters = DEFAULT_MAX_PARAMETERS;
+        }
+    }
+    
+    /**
+     * Resolves the criteria dialect of the given factory.
+     * 
+     * @param factory the session factory
+     * @return the cached criteria dialect of the factory
+     * @throws NullPointerException if factory is null
+     */
+    public static CriteriaDialect of(SessionFactoryImplementor factory) {
+        Preconditions.checkNotNull(factory, "Factory");
+        final CriteriaDialect cached = CACHE.get(factory);
+        if (cached != null) return cached;
+        final CriteriaDialect resolved = new CriteriaDialect(factory.getDialect());
+        final CriteriaDialect existing = CACHE.putIfAbsent(factory, resolved);
+        if (existing != null) return existing;
+        LOG.debug("Resolved {} for {}", resolved, factory);
+        return resolved;
+    }
+    
+    public BitwiseDialect getBitwise() {
+        return bitwise;
+    }
+    
+    public FullTextDialect getFullText() {
+        return fullText;
+    }
+    
+    /**
+     * Returns whether the database supports the {@code ilike} operator.
+     * 
+     * @return true if ilike is supported, false otherwise
+     */
+    public boolean isIlike() {
+        return ilike;
+    }
+    
+    public String getLowercaseFunction() {
+        return lowercaseFunction;
+    }
+    
+    /**
+     * Returns the maximum number of elements which should be used in a single
+     * in-list, which is 1000 on Oracle and {@link #DEFAULT_MAX_IN_LIST_SIZE} otherwise.
+     * 
+     * @return the maximum in-list size
+     */
+    public int getMaxInListSize() {
+        return maxInListSize;
+    }
+    
+    /**
+     * Returns the maximum number of parameters the database (or its jdbc driver)
+     * accepts in a single statement, which is 65535 on MySQL and Oracle, 2100 on
+     * SQL Server and {@link #DEFAULT_MAX_PARAMETERS} (PostgreSQL's limit) otherwise.
+     * 
+     * @return the maximum number of parameters per statement
+     */
+    public int getMaxParameters() {
+        return maxParameters;
+    }
+    
+    /**
+     * Looks up a cached fragment.
+     * 
+     * @param key the key of the fragment
+     * @return the cached fragment or null if there is no such fragment
+     */
+    public String getFragment(FragmentKey key) {
+        return fragments.get(key);
+    }
+    
+    /**
+     * Caches a rendered fragment.
+     * 
+     * @param key the key of the fragment
+     * @param fragment the rendered fragment
+     * @return the cached fragment, which is the given one unless another
+     *         thread rendered the same fragment concurrently
+     * @throws NullPointerException if key or fragment is null
+     */
+    public String putFragment(FragmentKey key, String fragment) {
+        Preconditions.checkNotNull(key, "Key");
+        Preconditions.checkNotNull(fragment, "Fragment");
+        if (fragments.size() >= MAX_FRAGMENTS) {
+            LOG.debug("Fragment cache is full, not caching {}", key);
+            return fragment;
+        }
+        final String existing = fragments.putIfAbsent(key, fragment);
+        return existing == null ? fragment : existing;
+    }
+    
+    @Override
+    public String toString() {
+        return "CriteriaDialect[" + bitwise + ", " + fullText + (ilike ? ", ilike" : "") + "]";
+    }
+    
+    /**
+     * The key of a cached fragment. It consists of the rendering criterion class, the column(s),
+     * an optional mode (e.g. the operator or match mode) and an optional numeric value.
+     * Keys are cheap to create and compute their hash code only once.
+     *
+     * @author Willi Schoenborn
+     */
+    public static final class FragmentKey {
+        
+        private final Class<?> owner;
+        private final String column;
+        private final Object mode;
+        private final long value;
+        private final int hashCode;
+        
+        /**
+         * Creates a new key.
+         * 
+         * @param owner the class of the rendering criterion
+         * @param column the column, or all columns joined, the fragment is rendered for
+         * @param mode an optional mode, may be null
+         * @param value an additional value the fragment depends on, use 0 if there is none
+         * @throws NullPointerException if owner or column is null
+         */
+        public FragmentKey(Class<?> owner, String column, Object mode, long value) {
+            this.owner = Preconditions.checkNotNull(owner, "Owner");
+            this.column = Preconditions.checkNotNull(column, "Column");
+            this.mode = mode;
+            this.value = value;
+            this.hashCode = Objects.hashCode(owner, column, mode, Long.valueOf(value));
+        }
+        
+        @Override
+        public boolean equals(Object that) {
+            if (this == that) {
+                return true;
+            } else if (that instanceof FragmentKey) {
+                final FragmentKey other = FragmentKey.class.cast(that);
+                return hashCode == other.hashCode && value == other.value && owner == other.owner && 
+                    column.equals(other.column) && Objects.equal(mode, other.mode);
+            } else {
+                return false;
+            }
+        }
+        
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+        
+        @Override
+        public String toString() {
+            return owner.getSimpleName() + "[" + column + ", " + mode + ", " + value + "]";
+        }
+        
+    }
+    
+}
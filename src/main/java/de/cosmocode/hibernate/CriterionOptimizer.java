@@ -0,0 +1,321 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.cosmocode.hibernate;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.InExpression;
+import org.hibernate.criterion.Junction;
+import org.hibernate.criterion.LogicalExpression;
+import org.hibernate.criterion.NotExpression;
+import org.hibernate.criterion.NotNullExpression;
+import org.hibernate.criterion.NullExpression;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.criterion.SQLCriterion;
+import org.hibernate.criterion.SimpleExpression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Normalizes {@link Criterion} trees before execution.
+ * 
+ * <p>
+ *   {@link #optimize(Criterion)} applies the following rewrites:
+ *   <ul>
+ *     <li>nested conjunctions and disjunctions are flattened</li>
+ *     <li>duplicate children of junctions are removed</li>
+ *     <li>constant branches ({@code 1=1}, {@code 1=0}) are folded</li>
+ *     <li>double negations are removed</li>
+ *     <li>{@code or(eq(p, a), eq(p, b), in(p, c, d))} is merged into {@code in(p, a, b, c, d)}</li>
+ *   </ul>
+ *   Duplicates are detected structurally for the criteria provided by {@link Restrictions}
+ *   and {@link CustomRestrictions} junctions, every other criterion is only equal to itself.
+ *   Empty junctions are treated as true, because Hibernate renders them as {@code 1=1}
+ *   (even disjunctions), junctions whose children are all folded away become the neutral
+ *   constant ({@code 1=1} for conjunctions, {@code 1=0} for disjunctions).
+ * </p>
+ * 
+ * <p>
+ *   The Hibernate criteria don't expose their state, so it is read using reflection.
+ *   If that fails (e.g. due to an incompatible Hibernate version or a security manager),
+ *   criteria are returned unchanged.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ */
+public final class CriterionOptimizer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CriterionOptimizer.class);
+    
+    private static final String TRUE = "1=1";
+    private static final String FALSE = "1=0";
+    
+    private static final Field JUNCTION_CRITERIA = field(Junction.class, "criteria");
+    private static final Field LOGICAL_LHS = field(LogicalExpression.class, "lhs");
+    private static final Field LOGICAL_RHS = field(LogicalExpression.class, "rhs");
+    private static final Field LOGICAL_OP = field(LogicalExpression.class, "op");
+    private static final Field NOT_CRITERION = field(NotExpression.class, "criterion");
+    private static final Field SIMPLE_PROPERTY = field(SimpleExpression.class, "propertyName");
+    private static final Field SIMPLE_VALUE = field(SimpleExpression.class, "value");
+    private static final Field SIMPLE_IGNORE_CASE = field(SimpleExpression.class, "ignoreCase");
+    private static final Field SIMPLE_OP = field(SimpleExpression.class, "op");
+    private static final Field IN_PROPERTY = field(InExpression.class, "propertyName");
+    private static final Field IN_VALUES = field(InExpression.class, "values");
+    private static final Field NULL_PROPERTY = field(NullExpression.class, "propertyName");
+    private static final Field NOT_NULL_PROPERTY = field(NotNullExpression.class, "propertyName");
+    private static final Field SQL_TYPED_VALUES = field(SQLCriterion.class, "typedValues");
+    
+    private static final boolean SUPPORTED = !Arrays.asList(
+        JUNCTION_CRITERIA, LOGICAL_LHS, LOGICAL_RHS, LOGICAL_OP, NOT_CRITERION,
+        SIMPLE_PROPERTY, SIMPLE_VALUE, SIMPLE_IGNORE_CASE, SIMPLE_OP, IN_PROPERTY, IN_VALUES,
+        NULL_PROPERTY, NOT_NULL_PROPERTY, SQL_TYPED_VALUES
+    ).contains(null);
+    
+    private CriterionOptimizer() {
+        
+    }
+    
+    private static Field field(Class<?> type, String name) {
+        try {
+            final Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (SecurityException e) {
+            LOG.warn("Unable to access " + type.getName() + "." + name + ", criteria will not be optimized", e);
+            return null;
+        } catch (NoSuchFieldException e) {
+            LOG.warn("Unable to access " + type.getName() + "." + name + ", criteria will not be optimized", e);
+            return null;
+        }
+    }
+    
+    /**
+     * Optimizes the given criterion.
+     * 
+     * @param criterion the criterion to optimize
+     * @return an equivalent, optimized criterion or criterion itself if
+     *         it can't be optimized
+     * @throws NullPointerException if criterion is null
+     */
+    public static Criterion optimize(Criterion criterion) {
+        Preconditions.checkNotNull(criterion, "Criterion");
+        if (!SUPPORTED) return criterion;
+        try {
+            return simplify(criterion);
+        } catch (IllegalAccessException e) {
+            LOG.warn("Unable to optimize " + criterion, e);
+            return criterion;
+        }
+    }
+    
+    private static Criterion simplify(Criterion criterion) throws IllegalAccessException {
+        if (criterion instanceof NotExpression) {
+            final Criterion inner = simplify(Criterion.class.cast(NOT_CRITERION.get(criterion)));
+            if (isConstant(inner, TRUE)) {
+                return Restrictions.sqlRestriction(FALSE);
+            } else if (isConstant(inner, FALSE)) {
+                return Restrictions.sqlRestriction(TRUE);
+            } else if (inner instanceof NotExpression) {
+                return Criterion.class.cast(NOT_CRITERION.get(inner));
+            } else {
+                return Restrictions.not(inner);
+            }
+        }
+        
+        final String op = junctionOp(criterion);
+        if (op == null) return criterion;
+        final boolean and = "and".equals(op);
+        if (children(criterion).isEmpty()) return Restrictions.sqlRestriction(TRUE);
+        
+        final List<Criterion> flat = new ArrayList<Criterion>();
+        for (Criterion child : children(criterion)) {
+            final Criterion simplified = simplify(child);
+            if (op.equals(junctionOp(simplified))) {
+                // already simplified, hence flat
+                flat.addAll(children(simplified));
+            } else {
+                flat.add(simplified);
+            }
+        }
+        
+        // the neutral element is skipped, the absorbing element absorbs the junction
+        final String neutral = and ? TRUE : FALSE;
+        final String absorbing = and ? FALSE : TRUE;
+        final Map<Object, Criterion> unique = new LinkedHashMap<Object, Criterion>();
+        for (Criterion child : flat) {
+            if (isConstant(child, neutral)) continue;
+            if (isConstant(child, absorbing)) return Restrictions.sqlRestriction(absorbing);
+            final Object key = key(child);
+            if (!unique.containsKey(key)) unique.put(key, child);
+        }
+        
+        final List<Criterion> children = and ? 
+            new ArrayList<Criterion>(unique.values()) : mergeIn(unique.values());
+        
+        if (children.isEmpty()) {
+            return Restrictions.sqlRestriction(neutral);
+        } else if (children.size() == 1) {
+            return children.get(0);
+        }
+        
+        final Junction junction = and ? Restrictions.conjunction() : Restrictions.disjunction();
+        for (Criterion child : children) {
+            junction.add(child);
+        }
+        return junction;
+    }
+    
+    /**
+     * Returns "and"/"or" for junctions and logical expressions, null otherwise.
+     */
+    private static String junctionOp(Criterion criterion) throws IllegalAccessException {
+        final String op;
+        if (criterion instanceof Junction) {
+            op = Junction.class.cast(criterion).getOp();
+        } else if (criterion instanceof LogicalExpression) {
+            op = String.class.cast(LOGICAL_OP.get(criterion));
+        } else {
+            return null;
+        }
+        final String trimmed = op.trim().toLowerCase();
+        return "and".equals(trimmed) || "or".equals(trimmed) ? trimmed : null;
+    }
+    
+    private static List<Criterion> children(Criterion criterion) throws IllegalAccessException {
+        if (criterion instanceof Junction) {
+            @SuppressWarnings("unchecked")
+            final List<Criterion> criteria = List.class.cast(JUNCTION_CRITERIA.get(criterion));
+            return criteria;
+        } else {
+            return Arrays.asList(
+                Criterion.class.cast(LOGICAL_LHS.get(criterion)), 
+                Criterion.class.cast(LOGICAL_RHS.get(criterion))
+            );
+        }
+    }
+    
+    private static boolean isConstant(Criterion criterion, String sql) throws IllegalAccessException {
+        if (criterion instanceof SQLCriterion) {
+            final Object[] values = Object[].class.cast(SQL_TYPED_VALUES.get(criterion));
+            return (values == null || values.length == 0) && sql.equals(criterion.toString().replace(" ", ""));
+        } else if (criterion instanceof Junction) {
+            // empty junctions render 1=1
+            return TRUE.equals(sql) && children(criterion).isEmpty();
+        } else {
+            return false;
+        }
+    }
+    
+    /**
+     * Computes a key which is equal for structurally equal criteria.
+     */
+    private static Object key(Criterion criterion) throws IllegalAccessException {
+        final Class<?> type = criterion.getClass();
+        if (type == SimpleExpression.class) {
+            return Arrays.asList(type, SIMPLE_PROPERTY.get(criterion), 
+                SIMPLE_OP.get(criterion),
+                SIMPLE_IGNORE_CASE.get(criterion), SIMPLE_VALUE.get(criterion));
+        } else if (type == InExpression.class) {
+            return Arrays.asList(type, IN_PROPERTY.get(criterion), 
+                Arrays.asList(Object[].class.cast(IN_VALUES.get(criterion))));
+        } else if (type == NullExpression.class) {
+            return Arrays.asList(type, NULL_PROPERTY.get(criterion));
+        } else if (type == NotNullExpression.class) {
+            return Arrays.asList(type, NOT_NULL_PROPERTY.get(criterion));
+        } else if (type == NotExpression.class) {
+            return Arrays.asList(type, key(Criterion.class.cast(NOT_CRITERION.get(criterion))));
+        } else if (type == SQLCriterion.class) {
+            return Arrays.asList(type, criterion.toString(), 
+                Arrays.asList(Object[].class.cast(SQL_TYPED_VALUES.get(criterion))));
+        } else if (junctionOp(criterion) != null) {
+            final List<Object> keys = new ArrayList<Object>();
+            keys.add(junctionOp(criterion));
+            for (Criterion child : children(criterion)) {
+                keys.add(key(child));
+            }
+            return keys;
+        } else {
+            return criterion;
+        }
+    }
+    
+    /**
+     * Merges equality and in expressions of the same property, keeping the
+     * position of the first one.
+     */
+    private static List<Criterion> mergeIn(Iterable<Criterion> criteria) throws IllegalAccessException {
+        final Map<String, Set<Object>> values = new LinkedHashMap<String, Set<Object>>();
+        final Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+        for (Criterion criterion : criteria) {
+            final String propertyName = mergeable(criterion);
+            if (propertyName == null) continue;
+            if (!values.containsKey(propertyName)) {
+                values.put(propertyName, new LinkedHashSet<Object>());
+                counts.put(propertyName, Integer.valueOf(0));
+            }
+            values.get(propertyName).addAll(valuesOf(criterion));
+            counts.put(propertyName, Integer.valueOf(counts.get(propertyName).intValue() + 1));
+        }
+        
+        final List<Criterion> merged = new ArrayList<Criterion>();
+        for (Criterion criterion : criteria) {
+            final String propertyName = mergeable(criterion);
+            if (propertyName == null || counts.get(propertyName).intValue() < 2) {
+                merged.add(criterion);
+            } else if (values.containsKey(propertyName)) {
+                merged.add(Restrictions.in(propertyName, values.remove(propertyName)));
+            }
+        }
+        return merged;
+    }
+    
+    /**
+     * Returns the property name of eq and in expressions, null otherwise.
+     */
+    private static String mergeable(Criterion criterion) throws IllegalAccessException {
+        if (criterion.getClass() == SimpleExpression.class) {
+            final boolean eq = "=".equals(SIMPLE_OP.get(criterion));
+            final boolean ignoreCase = Boolean.TRUE.equals(SIMPLE_IGNORE_CASE.get(criterion));
+            return eq && !ignoreCase ? String.class.cast(SIMPLE_PROPERTY.get(criterion)) : null;
+        } else if (criterion.getClass() == InExpression.class) {
+            return String.class.cast(IN_PROPERTY.get(criterion));
+        } else {
+            return null;
+        }
+    }
+    
+    private static List<Object> valuesOf(Criterion criterion) throws IllegalAccessException {
+        if (criterion.getClass() == SimpleExpression.class) {
+            return Collections.singletonList(SIMPLE_VALUE.get(criterion));
+        } else {
+            return Arrays.asList(Object[].class.cast(IN_VALUES.get(criterion)));
+        }
+    }
+    
+}
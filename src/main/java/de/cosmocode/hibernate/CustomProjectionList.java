@@ -38,7 +38,7 @@ public class CustomProjectionList extends ProjectionList {
         for (int i = 0; i < getLength(); i++) {
             final Projection proj = getProjection(i);
             buf.append(proj.toSqlString(criteria, loc, criteriaQuery));
-            proj.getColumnAliases(loc);
+            loc += proj.getColumnAliases(loc).length;
             if (i < getLength() - 1 && !getProjection(i + 1).isGrouped()) buf.append(", ");
         }
         return buf.toString();
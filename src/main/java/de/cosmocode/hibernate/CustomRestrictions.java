@@ -16,6 +16,9 @@
 
 package de.cosmocode.hibernate;
 
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Locale;
 import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
@@ -148,6 +151,27 @@ public final class CustomRestrictions {
         return Restrictions.not(CustomRestrictions.isEmpty(propertyName));
     }
     
+    /**
+     * Apply an "in" constraint to the named property, suitable for huge collections.
+     * 
+     * <p>
+     *   Note: This implementation differs from {@link Restrictions#in(String, Collection)}
+     *   because it renders a false expression for empty collections and splits collections
+     *   exceeding the in-list limit of the database (e.g. 1000 on Oracle).
+     * </p>
+     * 
+     * @see LargeInExpression
+     * 
+     * @param propertyName the name of the property the constraint should be applied to
+     * @param values the values the property should be in
+     * @return a new {@link Criterion}
+     */
+    public static Criterion in(String propertyName, Collection<?> values) {
+        return values.isEmpty() ? 
+            Restrictions.sqlRestriction("1=0") : 
+            new LargeInExpression(propertyName, values);
+    }
+    
     /**
      * Apply an "ilike" constraint on the named property.
      * 
@@ -233,6 +257,98 @@ public final class CustomRestrictions {
         return notIlike(propertyName, value, MatchMode.ANYWHERE);
     }
     
+    /**
+     * Apply a full-text search constraint on the named property.
+     * 
+     * <p>
+     *   Note: This implementation checks for empty strings and applies
+     *   {@link CustomRestrictions#isEmpty(String)} instead. Databases without supported
+     *   full-text search fall back to {@link CustomRestrictions#ilike(String, String)}.
+     * </p>
+     * 
+     * <p>
+     *   Its equivalent to calling {@link CustomRestrictions#fullText(String, String, String)}
+     *   using {@link FullTextExpression#DEFAULT_CONFIGURATION}.
+     * </p>
+     * 
+     * @see FullTextExpression
+     * 
+     * @param propertyName the name of the property the constraint should be applied to
+     * @param query the words to search for
+     * @return a new {@link Criterion}
+     */
+    public static Criterion fullText(String propertyName, String query) {
+        return fullText(propertyName, query, FullTextExpression.DEFAULT_CONFIGURATION);
+    }
+    
+    /**
+     * Apply a full-text search constraint on the named property.
+     * 
+     * <p>
+     *   Note: This implementation checks for empty strings and applies
+     *   {@link CustomRestrictions#isEmpty(String)} instead. Databases without supported
+     *   full-text search fall back to {@link CustomRestrictions#ilike(String, String)}.
+     * </p>
+     * 
+     * @see FullTextExpression
+     * 
+     * @param propertyName the name of the property the constraint should be applied to
+     * @param query the words to search for
+     * @param configuration the text search configuration used by PostgreSQL, e.g. "english"
+     * @return a new {@link Criterion}
+     * @throws IllegalArgumentException if configuration is not a valid identifier
+     */
+    public static Criterion fullText(String propertyName, String query, String configuration) {
+        return StringUtils.isEmpty(query) ? 
+            CustomRestrictions.isEmpty(propertyName) : 
+            new FullTextExpression(propertyName, query, configuration);
+    }
+    
+    /**
+     * Apply a "starts with" constraint on the named property using an index-friendly range.
+     * 
+     * <p>
+     *   Note: This implementation checks for empty strings and applies
+     *   {@link CustomRestrictions#isEmpty(String)} instead. The comparison is case sensitive,
+     *   see {@link PrefixRangeExpression} for collation requirements.
+     * </p>
+     * 
+     * @see PrefixRangeExpression
+     * 
+     * @param propertyName the name of the property the constraint should be applied to
+     * @param value the prefix the property should start with
+     * @return a new {@link Criterion}
+     */
+    public static Criterion startsWith(String propertyName, String value) {
+        return StringUtils.isEmpty(value) ? 
+            CustomRestrictions.isEmpty(propertyName) : 
+            new PrefixRangeExpression(propertyName, value);
+    }
+    
+    /**
+     * Apply a case insensitive "starts with" constraint on the named shadow property
+     * using an index-friendly range.
+     * 
+     * <p>
+     *   The shadow property has to be mapped to a column which stores the lowercased
+     *   value of the original property, e.g. maintained by the entity or a generated column.
+     *   The value is lowercased the same way as for
+     *   {@link CustomRestrictions#reverseIlike(String, String, PropertyMatchMode)}.
+     *   Empty values are handled like {@link CustomRestrictions#startsWith(String, String)} does.
+     * </p>
+     * 
+     * @see PrefixRangeExpression
+     * 
+     * @param shadowPropertyName the name of the lowercased shadow property
+     * @param value the prefix the property should start with, ignoring case
+     * @return a new {@link Criterion}
+     */
+    public static Criterion startsWithIgnoreCase(String shadowPropertyName, String value) {
+        return StringUtils.isEmpty(value) ? 
+            CustomRestrictions.isEmpty(shadowPropertyName) : 
+            new PrefixRangeExpression(shadowPropertyName, value.toLowerCase(Locale.ENGLISH));
+    }
+    
     /**
      * Apply a "reverse ilike" expression on the named property.
      * 
@@ -308,19 +424,38 @@ public final class CustomRestrictions {
      * @return a new {@link Criterion}
      */
     public static <E extends Enum<E>> Criterion has(String propertyName, E e) {
-        return new EnumSetRestriction<E>(propertyName, "&", e, ">", 0);
+        return new EnumSetRestriction<E>(propertyName, "&", EnumSet.of(e), "<>", 0, EnumSetRestriction.Join.ANY);
     }
 
     /**
      * Apply a "all" constraint to the named enumset property.
      * 
+     * <p>
+     *   Note: Despite its name, this constraint is satisfied if the named property
+     *   contains at least one of the given enums. This behaviour is kept for compatibility,
+     *   use {@link #hasAll(String, Set)} to require all of them.
+     * </p>
+     * 
      * @param <E> the generic enum type
      * @param propertyName the name of the property the constraint should be applied to
      * @param enums the set of enums the named property should contain
      * @return a new {@link Criterion}
      */
     public static <E extends Enum<E>> Criterion all(String propertyName, Set<E> enums) {
-        return new EnumSetRestriction<E>(propertyName, "&", enums, ">", 0);
+        return new EnumSetRestriction<E>(propertyName, "&", enums, "<>", 0, EnumSetRestriction.Join.ANY);
+    }
+    
+    /**
+     * Apply a "contains all" constraint to the named enumset property. Properties spanning
+     * several columns, as mapped by {@link LargeEnumSetUserType}, are restricted word by word.
+     * 
+     * @param <E> the generic enum type
+     * @param propertyName the name of the property the constraint should be applied to
+     * @param enums the set of enums the named property should contain, all of them
+     * @return a new {@link Criterion}
+     */
+    public static <E extends Enum<E>> Criterion hasAll(String propertyName, Set<E> enums) {
+        return EnumSetRestriction.containsAll(propertyName, enums);
     }
 
     /**
@@ -332,7 +467,7 @@ public final class CustomRestrictions {
      * @return a new {@link Criterion}
      */
     public static <E extends Enum<E>> Criterion notHas(String propertyName, E e) {
-        return new EnumSetRestriction<E>(propertyName, "&", e, "=", 0); 
+        return new EnumSetRestriction<E>(propertyName, "&", EnumSet.of(e), "=", 0, EnumSetRestriction.Join.ALL);
     }
 
     /**
@@ -344,7 +479,7 @@ public final class CustomRestrictions {
      * @return a new {@link Criterion}
      */
     public static <E extends Enum<E>> Criterion none(String propertyName, Set<E> enums) {
-        return new EnumSetRestriction<E>(propertyName, "&", enums, "=", 0);
+        return new EnumSetRestriction<E>(propertyName, "&", enums, "=", 0, EnumSetRestriction.Join.ALL);
     }
     
 }
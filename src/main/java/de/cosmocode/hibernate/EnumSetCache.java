@@ -0,0 +1,173 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.EnumSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.MapMaker;
+
+import de.cosmocode.commons.Enums;
+
+/**
+ * A cache of decoded {@link EnumSet}s, keyed by their bitset representation.
+ * 
+ * <p>
+ *   Caches are shared per enum class, see {@link #of(Class)}. Enums with up to
+ *   {@value #DENSE_LIMIT} constants use a dense table containing one slot per possible
+ *   flag, which is allocated on first use. Larger enums use a concurrent map holding at most
+ *   {@value #MAX_ENTRIES} flags, flags exceeding that limit are decoded every time.
+ *   Cached sets are prototypes, {@link #decode(long)} returns a clone, which is considerably
+ *   cheaper than decoding the flag again. {@link #shared(long)} returns the prototype itself
+ *   for callers which never modify it. Neither lookups nor insertions lock.
+ * </p>
+ * 
+ * <p>
+ *   Each cache references its enum class, hence caches are held weakly as well. They
+ *   live as long as they are in use, e.g. by an {@link EnumSetUserType}, and don't
+ *   prevent enum classes from being unloaded.
+ * </p>
+ *
+ * @see EnumSetUserType
+ *
+ * @author Willi Schoenborn
+ * @param <E> the generic enum type
+ */
+final class EnumSetCache<E extends Enum<E>> {
+
+    static final int DENSE_LIMIT = 10;
+    
+    static final int MAX_ENTRIES = 1024;
+    
+    private static final ConcurrentMap<Class<?>, EnumSetCache<?>> CACHES = 
+        new MapMaker().weakKeys().weakValues().makeMap();
+    
+    private final Class<E> type;
+    private final int width;
+    
+    private volatile AtomicReferenceArray<EnumSet<E>> dense;
+    private final ConcurrentMap<Long, EnumSet<E>> sparse;
+    
+    private EnumSetCache(Class<E> type) {
+        this.type = type;
+        this.width = type.getEnumConstants().length;
+        this.sparse = width <= DENSE_LIMIT ? null : new ConcurrentHashMap<Long, EnumSet<E>>();
+    }
+    
+    /**
+     * Returns the shared cache of the given enum class.
+     * 
+     * @param <E> the generic enum type
+     * @param type the enum class
+     * @return the cache of type
+     * @throws NullPointerException if type is null
+     */
+    static <E extends Enum<E>> EnumSetCache<E> of(Class<E> type) {
+        Preconditions.checkNotNull(type, "Type");
+        @SuppressWarnings("unchecked")
+        final EnumSetCache<E> cached = (EnumSetCache<E>) CACHES.get(type);
+        if (cached != null) return cached;
+        final EnumSetCache<E> created = new EnumSetCache<E>(type);
+        @SuppressWarnings("unchecked")
+        final EnumSetCache<E> existing = (EnumSetCache<E>) CACHES.putIfAbsent(type, created);
+        return existing == null ? created : existing;
+    }
+    
+    private EnumSet<E> copy(long flag) {
+        final EnumSet<E> set = EnumSet.noneOf(type);
+        set.addAll(Enums.decode(type, flag));
+        return set;
+    }
+    
+    private AtomicReferenceArray<EnumSet<E>> dense() {
+        final AtomicReferenceArray<EnumSet<E>> table = dense;
+        if (table != null) return table;
+        // racing threads may allocate twice, losing a few cached prototypes at most
+        final AtomicReferenceArray<EnumSet<E>> allocated = new AtomicReferenceArray<EnumSet<E>>(1 << width);
+        dense = allocated;
+        return allocated;
+    }
+    
+    private EnumSet<E> prototype(long flag) {
+        if (sparse == null) {
+            final AtomicReferenceArray<EnumSet<E>> table = dense();
+            final int index = (int) flag;
+            final EnumSet<E> cached = table.get(index);
+            if (cached != null) return cached;
+            final EnumSet<E> decoded = copy(flag);
+            table.compareAndSet(index, null, decoded);
+            return decoded;
+        } else {
+            final Long key = Long.valueOf(flag);
+            final EnumSet<E> cached = sparse.get(key);
+            if (cached != null) return cached;
+            final EnumSet<E> decoded = copy(flag);
+            if (sparse.size() < MAX_ENTRIES) {
+                sparse.putIfAbsent(key, decoded);
+            }
+            return decoded;
+        }
+    }
+    
+    private static boolean unknown(long flag, int width) {
+        return flag < 0 || width < Long.SIZE && flag >>> width != 0;
+    }
+    
+    /**
+     * Decodes the given flag into a new mutable {@link EnumSet}.
+     * 
+     * @param flag the bitset representation
+     * @return a new set containing the decoded constants
+     */
+    EnumSet<E> decode(long flag) {
+        if (unknown(flag, width)) {
+            // unknown bits, don't pollute the cache
+            return copy(flag);
+        }
+        return prototype(flag).clone();
+    }
+    
+    /**
+     * Decodes the given flag into a shared {@link EnumSet}, which must not be modified.
+     * 
+     * @param flag the bitset representation
+     * @return a set containing the decoded constants, shared by all callers
+     */
+    EnumSet<E> shared(long flag) {
+        return unknown(flag, width) ? copy(flag) : prototype(flag);
+    }
+    
+    /**
+     * Returns the number of cached prototypes. Intended for testing.
+     * 
+     * @return the number of cached flags
+     */
+    int size() {
+        if (sparse != null) return sparse.size();
+        final AtomicReferenceArray<EnumSet<E>> table = dense;
+        if (table == null) return 0;
+        int size = 0;
+        for (int i = 0; i < table.length(); i++) {
+            if (table.get(i) != null) size++;
+        }
+        return size;
+    }
+    
+}
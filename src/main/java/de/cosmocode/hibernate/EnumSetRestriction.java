@@ -21,6 +21,8 @@ import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.Criteria;
+import org.hibernate.EntityMode;
+import org.hibernate.Hibernate;
 import org.hibernate.HibernateException;
 import org.hibernate.criterion.CriteriaQuery;
 import org.hibernate.criterion.Criterion;
@@ -32,7 +34,27 @@ import de.cosmocode.commons.Enums;
  * A {@link Criterion} used to restrict by {@link EnumSet}s
  * being stored as bitsets.
  * 
+ * <p>
+ *   The encoded enums are passed as bind parameters, so the rendered sql only
+ *   depends on the property and the operators, which allows drivers and databases
+ *   to reuse prepared statements and plans for every combination of enums.
+ * </p>
+ * 
+ * <p>
+ *   Properties spanning several columns, as mapped by {@link LargeEnumSetUserType},
+ *   are restricted word by word. The column fragments are combined as specified by
+ *   the given {@link Join}. Masked words are compared using {@code <>} rather than
+ *   {@code >}, because a word having its highest bit set is negative.
+ * </p>
+ * 
+ * <p>
+ *   The {@code &} operator is rendered using the {@link BitwiseDialect}
+ *   of the current session factory. Rendered fragments are cached by the
+ *   {@link CriteriaDialect} of the current session factory.
+ * </p>
+ * 
  * @see EnumSetUserType
+ * @see LargeEnumSetUserType
  *
  * @author Willi Schoenborn
  * @param <E> the generic enum type
@@ -41,42 +63,123 @@ public class EnumSetRestriction<E extends Enum<E>> implements Criterion {
 
     private static final long serialVersionUID = 2754183680699907609L;
     
-    private static final TypedValue[] NO_VALUES = {};
+    /**
+     * Specifies how the fragments of properties spanning several columns are combined.
+     *
+     * @author Willi Schoenborn
+     */
+    public static enum Join {
+        
+        /**
+         * At least one word has to match, e.g. for "contains any" restrictions.
+         */
+        ANY(" or "),
+        
+        /**
+         * Every word has to match, e.g. for "contains all" and "contains none" restrictions.
+         */
+        ALL(" and ");
+        
+        private final String separator;
+        
+        private Join(String separator) {
+            this.separator = separator;
+        }
+        
+    }
     
     private final String propertyName;
     private final Set<E> enums;
     private final String bitOp;
     private final String op;
     private final long value;
+    private final Join join;
+    private final boolean compareToMask;
+    private final String operators;
     
     public EnumSetRestriction(String propertyName, String bitOp, E e, String op, long value) {
         this(propertyName, bitOp, EnumSet.of(e), op, value);
     }
     
     public EnumSetRestriction(String propertyName, String bitOp, Set<E> enums, String op, long value) {
+        this(propertyName, bitOp, enums, op, value, Join.ALL);
+    }
+    
+    public EnumSetRestriction(String propertyName, String bitOp, Set<E> enums, String op, long value, Join join) {
+        this(propertyName, bitOp, enums, op, value, join, false);
+    }
+    
+    private EnumSetRestriction(String propertyName, String bitOp, Set<E> enums, String op, long value, 
+        Join join, boolean compareToMask) {
         this.propertyName = propertyName;
         this.enums = enums;
         this.bitOp = bitOp;
         this.op = op;
         this.value = value;
+        this.join = join;
+        this.compareToMask = compareToMask;
+        this.operators = bitOp + op + join + compareToMask;
+    }
+    
+    /**
+     * Creates a restriction which requires every given enum to be contained, i.e.
+     * {@code (column & ?) = ?} binding the encoded word twice, combined using {@link Join#ALL}.
+     * 
+     * @param <E> the generic enum type
+     * @param propertyName the name of the enumset property
+     * @param enums the enums which have to be contained
+     * @return a new restriction
+     */
+    static <E extends Enum<E>> EnumSetRestriction<E> containsAll(String propertyName, Set<E> enums) {
+        return new EnumSetRestriction<E>(propertyName, "&", enums, "=", 0, Join.ALL, true);
     }
 
     @Override
     public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
         final String[] columns = criteriaQuery.getColumnsUsingProjection(criteria, propertyName);
+        
+        final CriteriaDialect criteriaDialect = CriteriaDialect.of(criteriaQuery.getFactory());
+        final String column = columns.length == 1 ? columns[0] : StringUtils.join(columns, ", ");
+        final CriteriaDialect.FragmentKey key = 
+            new CriteriaDialect.FragmentKey(EnumSetRestriction.class, column, operators, value);
+        final String cached = criteriaDialect.getFragment(key);
+        if (cached != null) return cached;
+        
+        final BitwiseDialect dialect = criteriaDialect.getBitwise();
+        
+        if (columns.length == 1) {
+            return criteriaDialect.putFragment(key, fragment(dialect, columns[0]));
+        }
+        
         final String[] fragments = new String[columns.length];
         
         for (int i = 0; i < columns.length; i++) {
-            fragments[i] = 
-                "(" + columns[i] + " " + bitOp + " " + Enums.encode(enums) + " " + op + " " + value + ")";
+            fragments[i] = fragment(dialect, columns[i]);
         }
         
-        return StringUtils.join(fragments, " and ");
+        return criteriaDialect.putFragment(key, 
+            "(" + StringUtils.join(fragments, join.separator) + ")");
+    }
+    
+    private String fragment(BitwiseDialect dialect, String column) {
+        final String masked = "&".equals(bitOp) ? dialect.and(column, "?") : "(" + column + " " + bitOp + " ?)";
+        return "(" + masked + " " + op + " " + (compareToMask ? "?" : Long.toString(value)) + ")";
     }
     
+    // unless a new api is provided
+    @SuppressWarnings("deprecation")
     @Override
     public TypedValue[] getTypedValues(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
-        return NO_VALUES; 
+        final int columns = criteriaQuery.getColumnsUsingProjection(criteria, propertyName).length;
+        final long[] words = columns == 1 ? new long[] {Enums.encode(enums)} : EnumWords.encode(enums, columns);
+        final int perWord = compareToMask ? 2 : 1;
+        final TypedValue[] values = new TypedValue[words.length * perWord];
+        
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new TypedValue(Hibernate.LONG, Long.valueOf(words[i / perWord]), EntityMode.POJO);
+        }
+        
+        return values;
     }
     
 }
@@ -34,6 +34,10 @@ import de.cosmocode.commons.Enums;
 
 /**
  * A {@link UserType} for storing {@link EnumSet}s as bitsets.
+ * 
+ * <p>
+ *   Decoded sets are cached per enum class and flag value, see {@link EnumSetCache}.
+ * </p>
  *
  * @author Willi Schoenborn
  * @param <E> the generic enum type
@@ -43,9 +47,12 @@ public abstract class EnumSetUserType<E extends Enum<E>> implements UserType {
     private static final int[] SQL_TYPES = {Types.BIGINT};
     
     private final Class<E> type;
+    
+    private final EnumSetCache<E> cache;
 
     protected EnumSetUserType(Class<E> type) {
         this.type = type;
+        this.cache = EnumSetCache.of(type);
     }
 
     @Override
@@ -63,9 +70,20 @@ public abstract class EnumSetUserType<E extends Enum<E>> implements UserType {
         return Objects.equal(x, y);
     }
     
+    /**
+     * Hibernate uses copies as snapshots of the loaded state only, which are neither modified
+     * nor handed out, see {@link #replace(Object, Object, Object)}. Sets are therefore "copied"
+     * to the shared prototypes of the {@link EnumSetCache}, so loading an entity allocates
+     * just the set returned by {@link #nullSafeGet(ResultSet, String[], Object)}.
+     */
     @Override
     public Object deepCopy(Object value) {
         if (value == null) return null;
+        if (value instanceof Set<?>) {
+            @SuppressWarnings("unchecked")
+            final Set<E> enums = Set.class.cast(value);
+            return cache.shared(Enums.encode(enums));
+        }
         @SuppressWarnings("unchecked")
         final Collection<E> values = Collection.class.cast(value);
         final Set<E> enums = EnumSet.noneOf(type);
@@ -82,7 +100,7 @@ public abstract class EnumSetUserType<E extends Enum<E>> implements UserType {
     public Object nullSafeGet(ResultSet resultSet, String[] names, Object owner) 
         throws HibernateException, SQLException {
         final long flag = resultSet.getLong(names[0]);
-        return Enums.decode(type, flag);
+        return cache.decode(flag);
     }
     
     @Override
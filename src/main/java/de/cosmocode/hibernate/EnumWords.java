@@ -0,0 +1,88 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Collection;
+import java.util.EnumSet;
+
+/**
+ * Encodes sets of enum constants into several 64 bit words, where
+ * constant n is stored in bit n % 64 of word n / 64.
+ *
+ * @see LargeEnumSetUserType
+ *
+ * @author Willi Schoenborn
+ */
+final class EnumWords {
+
+    private EnumWords() {
+        
+    }
+    
+    /**
+     * Computes the number of words required to store all constants of the given enum type.
+     * 
+     * @param type the enum type
+     * @return the number of words, at least 1
+     */
+    static int words(Class<? extends Enum<?>> type) {
+        return Math.max(1, (type.getEnumConstants().length + Long.SIZE - 1) / Long.SIZE);
+    }
+    
+    /**
+     * Encodes the given constants.
+     * 
+     * @param values the constants to encode
+     * @param words the number of words
+     * @return an array of the given length
+     * @throws IllegalArgumentException if a constant doesn't fit into the given number of words
+     */
+    static long[] encode(Collection<? extends Enum<?>> values, int words) {
+        final long[] encoded = new long[words];
+        for (Enum<?> e : values) {
+            final int word = e.ordinal() / Long.SIZE;
+            if (word >= words) {
+                throw new IllegalArgumentException(e + " does not fit into " + words + " words");
+            }
+            encoded[word] |= 1L << e.ordinal();
+        }
+        return encoded;
+    }
+    
+    /**
+     * Decodes the given words into a new set.
+     * 
+     * @param <E> the generic enum type
+     * @param type the enum type
+     * @param words the encoded words
+     * @return a new set, unknown bits are ignored
+     */
+    static <E extends Enum<E>> EnumSet<E> decode(Class<E> type, long[] words) {
+        final EnumSet<E> set = EnumSet.noneOf(type);
+        final E[] constants = type.getEnumConstants();
+        for (int word = 0; word < words.length; word++) {
+            long bits = words[word];
+            while (bits != 0) {
+                final int ordinal = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                if (ordinal < constants.length) set.add(constants[ordinal]);
+                bits &= bits - 1;
+            }
+        }
+        return set;
+    }
+    
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Output formats supported by the {@link ResultsExporter}.
+ * 
+ * <p>
+ *   Values passed to {@link #value(StringBuilder, int, String, Object)} have
+ *   already been normalized by the exporter and are either null, {@link Number}s,
+ *   {@link Boolean}s, {@link String}s or {@link Collection}s of {@link String}s.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ */
+public enum ExportFormat {
+    
+    /**
+     * Comma separated values as described in RFC 4180, including a header line.
+     * Collections are rendered as a single field joined by {@code |}.
+     */
+    CSV {
+        
+        @Override
+        public void header(StringBuilder buffer, String[] columns) {
+            for (int i = 0; i < columns.length; i++) {
+                value(buffer, i, columns[i], columns[i]);
+            }
+            end(buffer);
+        }
+        
+        @Override
+        public void begin(StringBuilder buffer) {
+            
+        }
+        
+        @Override
+        public void value(StringBuilder buffer, int index, String column, Object value) {
+            if (index > 0) buffer.append(',');
+            if (value == null) return;
+            final String s;
+            if (value instanceof Collection<?>) {
+                final StringBuilder joined = new StringBuilder();
+                final Iterator<?> iterator = Collection.class.cast(value).iterator();
+                while (iterator.hasNext()) {
+                    joined.append(iterator.next());
+                    if (iterator.hasNext()) joined.append('|');
+                }
+                s = joined.toString();
+            } else {
+                s = value.toString();
+            }
+            
+            if (s.indexOf(',') == -1 && s.indexOf('"') == -1 && s.indexOf('\n') == -1 && s.indexOf('\r') == -1) {
+                buffer.append(s);
+            } else {
+                buffer.append('"');
+                for (int i = 0; i < s.length(); i++) {
+                    final char c = s.charAt(i);
+                    if (c == '"') buffer.append('"');
+                    buffer.append(c);
+                }
+                buffer.append('"');
+            }
+        }
+        
+        @Override
+        public void end(StringBuilder buffer) {
+            buffer.append("\r\n");
+        }
+        
+    },
+    
+    /**
+     * Newline delimited JSON, one object per row using the column names as keys.
+     */
+    NDJSON {
+        
+        @Override
+        public void header(StringBuilder buffer, String[] columns) {
+            
+        }
+        
+        @Override
+        public void begin(StringBuilder buffer) {
+            buffer.append('{');
+        }
+        
+        @Override
+        public void value(StringBuilder buffer, int index, String column, Object value) {
+            if (index > 0) buffer.append(',');
+            string(buffer, column);
+            buffer.append(':');
+            json(buffer, value);
+        }
+        
+        private void json(StringBuilder buffer, Object value) {
+            if (value == null) {
+                buffer.append("null");
+            } else if (value instanceof Double && (Double.class.cast(value).isNaN() || 
+                Double.class.cast(value).isInfinite())) {
+                string(buffer, value.toString());
+            } else if (value instanceof Float && (Float.class.cast(value).isNaN() || 
+                Float.class.cast(value).isInfinite())) {
+                string(buffer, value.toString());
+            } else if (value instanceof Number || value instanceof Boolean) {
+                buffer.append(value);
+            } else if (value instanceof Collection<?>) {
+                buffer.append('[');
+                final Iterator<?> iterator = Collection.class.cast(value).iterator();
+                while (iterator.hasNext()) {
+                    json(buffer, iterator.next());
+                    if (iterator.hasNext()) buffer.append(',');
+                }
+                buffer.append(']');
+            } else {
+                string(buffer, value.toString());
+            }
+        }
+        
+        private void string(StringBuilder buffer, String s) {
+            buffer.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                final char c = s.charAt(i);
+                switch (c) {
+                    case '"': {
+                        buffer.append("\\\"");
+                        break;
+                    }
+                    case '\\': {
+                        buffer.append("\\\\");
+                        break;
+                    }
+                    case '\n': {
+                        buffer.append("\\n");
+                        break;
+                    }
+                    case '\r': {
+                        buffer.append("\\r");
+                        break;
+                    }
+                    case '\t': {
+                        buffer.append("\\t");
+                        break;
+                    }
+                    default: {
+                        if (c < 0x20) {
+                            buffer.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            buffer.append(c);
+                        }
+                    }
+                }
+            }
+            buffer.append('"');
+        }
+        
+        @Override
+        public void end(StringBuilder buffer) {
+            buffer.append("}\n");
+        }
+        
+    };
+    
+    /**
+     * Appends the header, if any.
+     * 
+     * @param buffer the buffer to append to
+     * @param columns the column names
+     */
+    public abstract void header(StringBuilder buffer, String[] columns);
+    
+    /**
+     * Appends the start of a row.
+     * 
+     * @param buffer the buffer to append to
+     */
+    public abstract void begin(StringBuilder buffer);
+    
+    /**
+     * Appends a single value of the current row.
+     * 
+     * @param buffer the buffer to append to
+     * @param index the zero-based column index
+     * @param column the column name
+     * @param value the normalized value
+     */
+    public abstract void value(StringBuilder buffer, int index, String column, Object value);
+    
+    /**
+     * Appends the end of a row.
+     * 
+     * @param buffer the buffer to append to
+     */
+    public abstract void end(StringBuilder buffer);
+    
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import org.hibernate.Criteria;
+import org.hibernate.EntityMode;
+import org.hibernate.Hibernate;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.engine.TypedValue;
+
+/**
+ * A {@link Criterion} which restricts a bitset property using the per-flag generated
+ * column created by {@link FlagIndexes#generatedColumns(org.hibernate.dialect.Dialect, String, String, Class)}.
+ * 
+ * <p>
+ *   Renders {@code my_column_flag = ?} instead of a bitwise expression,
+ *   which allows the database to use an index on the generated column.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ */
+public class FlagColumnExpression implements Criterion {
+
+    private static final long serialVersionUID = 8934625118530184517L;
+    
+    private final String propertyName;
+    private final Enum<?> flag;
+    private final boolean set;
+    
+    protected FlagColumnExpression(String propertyName, Enum<?> flag, boolean set) {
+        this.propertyName = propertyName;
+        this.flag = flag;
+        this.set = set;
+    }
+    
+    @Override
+    public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+        final String[] columns = criteriaQuery.getColumnsUsingProjection(criteria, propertyName);
+        if (columns.length != 1) {
+            throw new HibernateException("flag columns may only be used with single-column properties");
+        }
+        return FlagIndexes.columnName(criteriaQuery.getFactory().getDialect(), columns[0], flag) + " = ?";
+    }
+    
+    // unless a new api is provided
+    @SuppressWarnings("deprecation")
+    @Override
+    public TypedValue[] getTypedValues(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+        return new TypedValue[] {new TypedValue(Hibernate.INTEGER, Integer.valueOf(set ? 1 : 0), EntityMode.POJO)};
+    }
+    
+    @Override
+    public String toString() {
+        return propertyName + (set ? " has " : " has not ") + flag;
+    }
+    
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.cosmocode.hibernate;
+
+import java.util.EnumMap;
+
+import org.hibernate.Criteria;
+import org.hibernate.Hibernate;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.SimpleProjection;
+import org.hibernate.type.Type;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A {@link Projection} which counts, per enum constant, the rows having
+ * the corresponding flag set in a bitset property.
+ * 
+ * <p>
+ *   Renders one {@code sum(case when (column & bit) <> 0 then 1 else 0 end)}
+ *   column per constant, which allows to compute the whole histogram
+ *   in a single pass instead of one count query per flag. Grouping can be
+ *   added using a {@link GroupOnlyProjection} in a {@link CustomProjectionList}.
+ * </p>
+ * 
+ * <p>
+ *   Rows returned by a query using this projection can be converted
+ *   using {@link #toEnumMap(Object[], int)}.
+ * </p>
+ *
+ * @see BitwiseProjections#flagHistogram(String, Class)
+ *
+ * @param <E> the generic enum type
+ * @author Willi Schoenborn
+ */
+public class FlagHistogramProjection<E extends Enum<E>> extends SimpleProjection {
+
+    private static final long serialVersionUID = 2716543079126478455L;
+
+    private final String propertyName;
+    private final Class<E> type;
+    private final E[] constants;
+    
+    protected FlagHistogramProjection(String propertyName, Class<E> type) {
+        this.propertyName = Preconditions.checkNotNull(propertyName, "PropertyName");
+        this.type = Preconditions.checkNotNull(type, "Type");
+        this.constants = type.getEnumConstants();
+        Preconditions.checkArgument(constants.length <= Long.SIZE, 
+            "%s has more than %s constants", type, Long.SIZE);
+    }
+    
+    @Override
+    public String toSqlString(Criteria criteria, int position, CriteriaQuery criteriaQuery) 
+        throws HibernateException {
+        final String column = criteriaQuery.getColumn(criteria, propertyName);
+        final BitwiseDialect dialect = BitwiseDialect.of(criteriaQuery.getFactory());
+        final String[] aliases = getColumnAliases(position);
+        final StringBuilder buf = new StringBuilder();
+        for (E e : constants) {
+            if (e.ordinal() > 0) buf.append(", ");
+            buf.append("sum(case when ");
+            buf.append(dialect.and(column, BitwiseDialect.literal(1L << e.ordinal())));
+            buf.append(" <> 0 then 1 else 0 end) as ");
+            buf.append(aliases[e.ordinal()]);
+        }
+        return buf.toString();
+    }
+    
+    @Override
+    public String[] getColumnAliases(int loc) {
+        final String[] aliases = new String[constants.length];
+        for (int i = 0; i < aliases.length; i++) {
+            aliases[i] = "y" + (loc + i) + "_";
+        }
+        return aliases;
+    }
+    
+    // unless a new api is provided
+    @SuppressWarnings("deprecation")
+    @Override
+    public Type[] getTypes(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+        final Type[] types = new Type[constants.length];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = Hibernate.LONG;
+        }
+        return types;
+    }
+    
+    /**
+     * Converts the counts of a result row into an {@link EnumMap}.
+     * 
+     * @param row the result row
+     * @param offset the index of the first count in row, i.e. the number of
+     *        columns selected by preceding projections
+     * @return a new {@link EnumMap} containing the count for every constant
+     * @throws NullPointerException if row is null
+     * @throws IllegalArgumentException if row is too short
+     */
+    public EnumMap<E, Long> toEnumMap(Object[] row, int offset) {
+        Preconditions.checkNotNull(row, "Row");
+        Preconditions.checkArgument(offset >= 0 && offset + constants.length <= row.length,
+            "row of length %s does not contain %s counts at %s", row.length, constants.length, offset);
+        final EnumMap<E, Long> map = new EnumMap<E, Long>(type);
+        for (E e : constants) {
+            final Number count = Number.class.cast(row[offset + e.ordinal()]);
+            map.put(e, Long.valueOf(count == null ? 0L : count.longValue()));
+        }
+        return map;
+    }
+    
+    /**
+     * Converts the counts of a result row into an {@link EnumMap}, assuming
+     * this projection is the first one.
+     * 
+     * @param row the result row
+     * @return a new {@link EnumMap} containing the count for every constant
+     * @throws NullPointerException if row is null
+     * @throws IllegalArgumentException if row is too short
+     */
+    public EnumMap<E, Long> toEnumMap(Object[] row) {
+        return toEnumMap(row, 0);
+    }
+    
+    @Override
+    public String toString() {
+        return "flag_histogram(" + propertyName + ")";
+    }
+    
+}
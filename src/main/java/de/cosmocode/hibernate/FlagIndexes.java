@@ -0,0 +1,253 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.HSQLDialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.Oracle8iDialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+
+import de.cosmocode.commons.Enums;
+
+/**
+ * Index-friendly alternatives to the bitwise restrictions of {@link CustomRestrictions}.
+ * 
+ * <p>
+ *   Predicates like {@code (flags & 4) > 0} can't be served by a b-tree index. This class
+ *   offers two strategies to avoid full table scans:
+ *   <ul>
+ *     <li>
+ *       For enums with up to {@value #MAX_IN_LIST_CONSTANTS} constants {@link #has(String, Enum)},
+ *       {@link #any(String, Set, Class)} and {@link #none(String, Set, Class)} enumerate all
+ *       matching flag values and render an in-list, which can use a plain index on the column.
+ *     </li>
+ *     <li>
+ *       {@link #generatedColumns(Dialect, String, String, Class)} produces ddl for one indexed,
+ *       generated column per constant. {@link #hasColumn(String, Enum)} and
+ *       {@link #notHasColumn(String, Enum)} restrict using these columns.
+ *     </li>
+ *   </ul>
+ * </p>
+ *
+ * @author Willi Schoenborn
+ */
+public final class FlagIndexes {
+    
+    /**
+     * The maximum number of constants which are restricted using in-lists.
+     * Larger enums fall back to bitwise restrictions.
+     */
+    public static final int MAX_IN_LIST_CONSTANTS = 8;
+    
+    /**
+     * The maximum length of identifiers on Oracle.
+     */
+    private static final int ORACLE_IDENTIFIER_LENGTH = 30;
+
+    private FlagIndexes() {
+        
+    }
+    
+    /**
+     * Apply an index-friendly "has" constraint to the named enumset property.
+     * 
+     * @param <E> the generic enum type
+     * @param propertyName the name of the property the constraint should be applied to
+     * @param e the enum value the named property should contain
+     * @return a new {@link Criterion}
+     */
+    public static <E extends Enum<E>> Criterion has(String propertyName, E e) {
+        return any(propertyName, EnumSet.of(e), e.getDeclaringClass());
+    }
+    
+    /**
+     * Apply an index-friendly constraint to the named enumset property, which
+     * requires at least one of the given enums to be contained.
+     * 
+     * @param <E> the generic enum type
+     * @param propertyName the name of the property the constraint should be applied to
+     * @param enums the enum values of which the named property should contain at least one
+     * @param type the enum type
+     * @return a new {@link Criterion}
+     */
+    public static <E extends Enum<E>> Criterion any(String propertyName, Set<E> enums, Class<E> type) {
+        if (type.getEnumConstants().length > MAX_IN_LIST_CONSTANTS) {
+            return BitwiseRestrictions.containsAny(propertyName, Enums.encode(enums));
+        }
+        return in(propertyName, type, Enums.encode(enums), true);
+    }
+    
+    /**
+     * Apply an index-friendly "none" constraint to the named enumset property.
+     * 
+     * @param <E> the generic enum type
+     * @param propertyName the name of the property the constraint should be applied to
+     * @param enums the set of enums the named property should not contain
+     * @param type the enum type
+     * @return a new {@link Criterion}
+     */
+    public static <E extends Enum<E>> Criterion none(String propertyName, Set<E> enums, Class<E> type) {
+        if (type.getEnumConstants().length > MAX_IN_LIST_CONSTANTS) {
+            return BitwiseRestrictions.none(propertyName, Enums.encode(enums));
+        }
+        return in(propertyName, type, Enums.encode(enums), false);
+    }
+    
+    private static <E extends Enum<E>> Criterion in(String propertyName, Class<E> type, long mask, boolean any) {
+        final int width = type.getEnumConstants().length;
+        final List<Set<E>> values = new ArrayList<Set<E>>();
+        for (long value = 0; value < 1L << width; value++) {
+            if ((value & mask) != 0 == any) {
+                values.add(EnumWords.decode(type, new long[] {value}));
+            }
+        }
+        return values.isEmpty() ? Restrictions.sqlRestriction("1=0") : Restrictions.in(propertyName, values);
+    }
+    
+    /**
+     * Apply a "has" constraint to the named enumset property using the generated flag column.
+     * 
+     * @param propertyName the name of the property the constraint should be applied to
+     * @param e the enum value the named property should contain
+     * @return a new {@link Criterion}
+     */
+    public static Criterion hasColumn(String propertyName, Enum<?> e) {
+        return new FlagColumnExpression(propertyName, e, true);
+    }
+    
+    /**
+     * Apply a "not has" constraint to the named enumset property using the generated flag column.
+     * 
+     * @param propertyName the name of the property the constraint should be applied to
+     * @param e the enum value the named property should not contain
+     * @return a new {@link Criterion}
+     */
+    public static Criterion notHasColumn(String propertyName, Enum<?> e) {
+        return new FlagColumnExpression(propertyName, e, false);
+    }
+    
+    /**
+     * Computes the name of the generated column of the given flag. Names longer than
+     * the identifier length of the database are shortened like index names,
+     * see {@link #indexName(Dialect, String, String)}.
+     * 
+     * @param dialect the dialect of the database
+     * @param columnName the (possibly qualified) name of the bitset column
+     * @param e the enum constant
+     * @return the (possibly qualified) name of the generated column
+     */
+    public static String columnName(Dialect dialect, String columnName, Enum<?> e) {
+        final int dot = columnName.lastIndexOf('.');
+        final String name = columnName.substring(dot + 1) + "_" + e.name().toLowerCase(Locale.ENGLISH);
+        return columnName.substring(0, dot + 1) + shorten(dialect, name);
+    }
+    
+    /**
+     * Produces ddl statements which add one generated column per constant of the given
+     * enum type to the given table and index it. Each generated column contains 1 if 
+     * the flag is set and 0 otherwise. Supported dialects are MySQL (5.7 and later), 
+     * PostgreSQL (12 and later), Oracle (11g and later), H2 and HSQLDB.
+     * 
+     * <p>
+     *   Column and index names exceeding the identifier length of the database are shortened
+     *   and suffixed with a hash of the full name, see {@link #indexName(Dialect, String, String)}.
+     * </p>
+     * 
+     * @param <E> the generic enum type
+     * @param dialect the dialect of the database
+     * @param tableName the name of the table
+     * @param columnName the name of the bitset column
+     * @param type the enum type
+     * @return a list of ddl statements
+     * @throws UnsupportedOperationException if the dialect does not support generated columns
+     */
+    public static <E extends Enum<E>> List<String> generatedColumns(Dialect dialect, String tableName, 
+        String columnName, Class<E> type) {
+        final BitwiseDialect bitwise = BitwiseDialect.of(dialect);
+        final List<String> statements = new ArrayList<String>();
+        for (E e : type.getEnumConstants()) {
+            final String flagColumn = columnName(dialect, columnName, e);
+            final String expression = 
+                "case when " + bitwise.and(columnName, BitwiseDialect.literal(1L << e.ordinal())) + 
+                " <> 0 then 1 else 0 end";
+            statements.add("alter table " + tableName + " add " + generated(dialect, flagColumn, expression));
+            statements.add("create index " + indexName(dialect, tableName, flagColumn) + " on " + 
+                tableName + " (" + flagColumn + ")");
+        }
+        if (dialect instanceof HSQLDialect) {
+            // hsqldb doesn't compute generated columns of existing rows
+            statements.add("update " + tableName + " set " + columnName + " = " + columnName);
+        }
+        return statements;
+    }
+    
+    /**
+     * Computes the name of the index on the given generated column. Names longer
+     * than the 30 characters allowed by Oracle are truncated and suffixed with
+     * the hash of the full name, which keeps them unique per table and column.
+     * 
+     * @param dialect the dialect of the database
+     * @param tableName the name of the table
+     * @param flagColumn the name of the generated column
+     * @return the name of the index
+     */
+    static String indexName(Dialect dialect, String tableName, String flagColumn) {
+        return shorten(dialect, tableName + "_" + flagColumn + "_idx");
+    }
+    
+    // Oracle9Dialect is deprecated, but still in use
+    @SuppressWarnings("deprecation")
+    private static String shorten(Dialect dialect, String name) {
+        final boolean oracle = dialect instanceof Oracle8iDialect || 
+            dialect instanceof org.hibernate.dialect.Oracle9Dialect;
+        if (oracle && name.length() > ORACLE_IDENTIFIER_LENGTH) {
+            final String hash = String.format("%08x", name.hashCode());
+            return name.substring(0, ORACLE_IDENTIFIER_LENGTH - hash.length() - 1) + "_" + hash;
+        } else {
+            return name;
+        }
+    }
+    
+    // Oracle9Dialect is deprecated, but still in use
+    @SuppressWarnings("deprecation")
+    private static String generated(Dialect dialect, String column, String expression) {
+        if (dialect instanceof MySQLDialect) {
+            return column + " tinyint as (" + expression + ") stored";
+        } else if (dialect instanceof PostgreSQLDialect) {
+            return column + " smallint generated always as (" + expression + ") stored";
+        } else if (dialect instanceof Oracle8iDialect || dialect instanceof org.hibernate.dialect.Oracle9Dialect) {
+            return column + " number(1) generated always as (" + expression + ") virtual";
+        } else if (dialect instanceof H2Dialect) {
+            return column + " tinyint as (" + expression + ")";
+        } else if (dialect instanceof HSQLDialect) {
+            return column + " smallint generated always as (" + expression + ")";
+        } else {
+            throw new UnsupportedOperationException("Generated columns are not supported for " + dialect);
+        }
+    }
+    
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Iterator;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * An adapter which allows using {@link ScrollableResults} as an {@link Iterator}
+ * without ever calling {@link ScrollableResults#isLast()}.
+ * 
+ * <p>
+ *   Unlike {@link ScrollableResultsIterator} this implementation reads one row ahead
+ *   using a single {@link ScrollableResults#next()} per row. This allows using
+ *   results which have been opened using {@link ScrollMode#FORWARD_ONLY}, which
+ *   in turn allows drivers to stream rows instead of buffering the whole result.
+ * </p>
+ * 
+ * @see Scrolling
+ *
+ * @author Willi Schoenborn
+ * @param <E> the generic element type
+ */
+public final class ForwardOnlyScrollableResultsIterator<E> extends AbstractIterator<E> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ForwardOnlyScrollableResultsIterator.class);
+
+    private final ScrollableResults results;
+    
+    public ForwardOnlyScrollableResultsIterator(ScrollableResults results) {
+        this.results = Preconditions.checkNotNull(results, "Results");
+    }
+    
+    @Override
+    protected E computeNext() {
+        if (results.next()) {
+            @SuppressWarnings("unchecked")
+            final E result = (E) results.get(0);
+            LOG.trace("Next element is {}", result);
+            return result;
+        } else {
+            return endOfData();
+        }
+    }
+
+}
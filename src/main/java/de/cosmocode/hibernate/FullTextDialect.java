@@ -0,0 +1,136 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.cosmocode.hibernate;
+
+import java.util.Locale;
+
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Renders the native full-text predicate of a database.
+ * 
+ * @see FullTextExpression
+ *
+ * @author Willi Schoenborn
+ */
+public enum FullTextDialect {
+    
+    /**
+     * Renders {@code match(column) against (?)}, which requires a fulltext index on the column.
+     */
+    MYSQL {
+        
+        @Override
+        public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery, 
+            String column, String configuration) {
+            return "match(" + column + ") against (?)";
+        }
+        
+    },
+    
+    /**
+     * Renders {@code to_tsvector('configuration', column) @@ plainto_tsquery('configuration', ?)},
+     * which can use an expression index on {@code to_tsvector('configuration', column)}.
+     */
+    POSTGRESQL {
+        
+        @Override
+        public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery, 
+            String column, String configuration) {
+            return "to_tsvector('" + configuration + "', " + column + ") @@ " + 
+                "plainto_tsquery('" + configuration + "', ?)";
+        }
+        
+    },
+    
+    /**
+     * Uses H2's built-in full-text search ({@code FT_SEARCH_DATA}), which requires
+     * {@code FT_INIT()} and {@code FT_CREATE_INDEX(...)} on the entity's table. H2 matches
+     * any indexed column of a row, so indexing only the searched column is recommended.
+     */
+    H2 {
+        
+        @Override
+        public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery, 
+            String column, String configuration) {
+            final String[] ids = criteriaQuery.getIdentifierColumns(criteria);
+            if (ids.length != 1) {
+                throw new HibernateException("full-text search on H2 doesn't support composite identifiers");
+            }
+            final String entityName = criteriaQuery.getEntityName(criteria);
+            final EntityPersister persister = criteriaQuery.getFactory().getEntityPersister(entityName);
+            final String qualified = AbstractEntityPersister.class.cast(persister).getRootTableName();
+            final String table = qualified.substring(qualified.lastIndexOf('.') + 1).toUpperCase(Locale.ENGLISH);
+            return ids[0] + " in (select ft.keys[0] from ft_search_data(?, 0, 0) ft where ft.table = '" + table + "')";
+        }
+        
+    },
+    
+    /**
+     * Databases without supported full-text search, {@link FullTextExpression} falls back to ilike.
+     */
+    NONE {
+        
+        @Override
+        public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery, 
+            String column, String configuration) {
+            throw new UnsupportedOperationException("no native full-text search available");
+        }
+        
+    };
+    
+    /**
+     * Renders the full-text predicate, using exactly one parameter for the query.
+     * 
+     * @param criteria the current criteria
+     * @param criteriaQuery the current criteria query
+     * @param column the column to search in
+     * @param configuration the text search configuration, only used by PostgreSQL
+     * @return the sql predicate
+     * @throws UnsupportedOperationException if this is {@link #NONE}
+     */
+    public abstract String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery, 
+        String column, String configuration);
+    
+    /**
+     * Resolves the full-text dialect of the given dialect.
+     * 
+     * @param dialect the dialect
+     * @return the matching full-text dialect, {@link #NONE} if there is none
+     */
+    public static FullTextDialect of(Dialect dialect) {
+        if (dialect instanceof MySQLDialect) {
+            return MYSQL;
+        } else if (dialect instanceof PostgreSQLDialect) {
+            return POSTGRESQL;
+        } else if (dialect instanceof H2Dialect) {
+            return H2;
+        } else {
+            return NONE;
+        }
+    }
+    
+}
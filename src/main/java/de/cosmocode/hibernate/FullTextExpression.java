@@ -0,0 +1,90 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.cosmocode.hibernate;
+
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.MatchMode;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.TypedValue;
+
+/**
+ * A {@link Criterion} which uses the native full-text search of the database
+ * instead of an ilike expression using {@link MatchMode#ANYWHERE}.
+ * 
+ * <p>
+ *   The predicate is rendered by the {@link FullTextDialect} of the current
+ *   session factory. On databases without supported full-text search, this
+ *   criterion falls back to {@link Restrictions#ilike(String, String, MatchMode)}
+ *   using {@link MatchMode#ANYWHERE}. Note that full-text searches match words,
+ *   while the fallback matches arbitrary substrings.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ */
+public class FullTextExpression implements Criterion {
+
+    public static final String DEFAULT_CONFIGURATION = "simple";
+    
+    private static final long serialVersionUID = 4092360733658815467L;
+    
+    private final String propertyName;
+    private final String query;
+    private final String configuration;
+    private final Criterion fallback;
+    
+    protected FullTextExpression(String propertyName, String query, String configuration) {
+        if (!configuration.matches("[a-zA-Z_][a-zA-Z0-9_.]*")) {
+            throw new IllegalArgumentException("illegal text search configuration " + configuration);
+        }
+        this.propertyName = propertyName;
+        this.query = query;
+        this.configuration = configuration;
+        this.fallback = Restrictions.ilike(propertyName, query, MatchMode.ANYWHERE);
+    }
+    
+    private static FullTextDialect dialect(CriteriaQuery criteriaQuery) {
+        return CriteriaDialect.of(criteriaQuery.getFactory()).getFullText();
+    }
+    
+    @Override
+    public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+        final FullTextDialect dialect = dialect(criteriaQuery);
+        if (dialect == FullTextDialect.NONE) return fallback.toSqlString(criteria, criteriaQuery);
+        
+        final String[] columns = criteriaQuery.getColumnsUsingProjection(criteria, propertyName);
+        if (columns.length != 1) {
+            throw new HibernateException("full-text search may only be used with single-column properties");
+        }
+        return dialect.toSqlString(criteria, criteriaQuery, columns[0], configuration);
+    }
+    
+    @Override
+    public TypedValue[] getTypedValues(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+        if (dialect(criteriaQuery) == FullTextDialect.NONE) return fallback.getTypedValues(criteria, criteriaQuery);
+        return new TypedValue[] {criteriaQuery.getTypedValue(criteria, propertyName, query)};
+    }
+    
+    @Override
+    public String toString() {
+        return propertyName + " matches " + query;
+    }
+    
+}
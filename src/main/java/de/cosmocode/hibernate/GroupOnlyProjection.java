@@ -21,6 +21,7 @@ import org.hibernate.HibernateException;
 import org.hibernate.criterion.CriteriaQuery;
 import org.hibernate.criterion.Projection;
 import org.hibernate.criterion.PropertyProjection;
+import org.hibernate.type.Type;
 
 /**
  * A {@link Projection} which does not
@@ -41,5 +42,15 @@ public class GroupOnlyProjection extends PropertyProjection {
     public String toSqlString(Criteria criteria, int position, CriteriaQuery criteriaQuery) throws HibernateException {
         return isGrouped() ? "" : super.toSqlString(criteria, position, criteriaQuery);
     }
+    
+    @Override
+    public String[] getColumnAliases(int loc) {
+        return isGrouped() ? new String[0] : super.getColumnAliases(loc);
+    }
+    
+    @Override
+    public Type[] getTypes(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+        return isGrouped() ? new Type[0] : super.getTypes(criteria, criteriaQuery);
+    }
 
 }
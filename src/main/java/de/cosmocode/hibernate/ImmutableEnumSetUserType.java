@@ -0,0 +1,124 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.Set;
+
+import org.hibernate.HibernateException;
+import org.hibernate.usertype.UserType;
+
+import com.google.common.base.Objects;
+
+/**
+ * An immutable alternative to {@link EnumSetUserType} which maps
+ * bitset columns to {@link LongEnumSet}s.
+ * 
+ * <p>
+ *   Because values are immutable, Hibernate doesn't need to copy them
+ *   when loading entities, dirty checking is a single comparison of two longs and
+ *   the second level cache stores a plain {@link Long}. Entities have to assign
+ *   new sets, e.g. using {@link LongEnumSet#with(Enum)}, instead of modifying them.
+ *   Sets of other types are converted into {@link LongEnumSet}s when copied.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ * @param <E> the generic enum type
+ */
+public abstract class ImmutableEnumSetUserType<E extends Enum<E>> implements UserType {
+
+    private static final int[] SQL_TYPES = {Types.BIGINT};
+    
+    private final Class<E> type;
+
+    protected ImmutableEnumSetUserType(Class<E> type) {
+        this.type = type;
+    }
+    
+    @Override
+    public int[] sqlTypes() {
+        return SQL_TYPES;
+    }
+    
+    @Override
+    public Class<?> returnedClass() {
+        return Set.class;
+    }
+    
+    private LongEnumSet<E> convert(Object value) {
+        @SuppressWarnings("unchecked")
+        final Collection<E> values = Collection.class.cast(value);
+        return LongEnumSet.copyOf(type, values);
+    }
+    
+    @Override
+    public boolean equals(Object x, Object y) {
+        if (x instanceof LongEnumSet<?> && y instanceof LongEnumSet<?>) {
+            return LongEnumSet.class.cast(x).getBits() == LongEnumSet.class.cast(y).getBits();
+        } else {
+            return Objects.equal(x, y);
+        }
+    }
+    
+    @Override
+    public int hashCode(Object x) throws HibernateException {
+        return x.hashCode();
+    }
+    
+    @Override
+    public Object deepCopy(Object value) {
+        return value == null ? null : convert(value);
+    }
+    
+    @Override
+    public boolean isMutable() {
+        return false;
+    }
+    
+    @Override
+    public Object nullSafeGet(ResultSet resultSet, String[] names, Object owner) 
+        throws HibernateException, SQLException {
+        return LongEnumSet.of(type, resultSet.getLong(names[0]));
+    }
+    
+    @Override
+    public void nullSafeSet(PreparedStatement statement, Object value, int index) 
+        throws HibernateException, SQLException {
+        statement.setLong(index, value == null ? 0 : convert(value).getBits());
+    }
+    
+    @Override
+    public Object assemble(Serializable cached, Object owner) throws HibernateException {
+        return cached == null ? null : LongEnumSet.of(type, Long.class.cast(cached).longValue());
+    }
+    
+    @Override
+    public Serializable disassemble(Object value) throws HibernateException {
+        return value == null ? null : Long.valueOf(convert(value).getBits());
+    }
+    
+    @Override
+    public Object replace(Object original, Object target, Object owner) throws HibernateException {
+        return original;
+    }
+    
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.List;
+
+/**
+ * A single page fetched by a {@link KeysetPager}.
+ *
+ * @author Willi Schoenborn
+ * @param <E> the generic element type
+ */
+public final class KeysetPage<E> {
+
+    private final List<E> elements;
+    private final String continuation;
+    
+    KeysetPage(List<E> elements, String continuation) {
+        this.elements = elements;
+        this.continuation = continuation;
+    }
+    
+    /**
+     * Returns the elements of this page.
+     * 
+     * @return an unmodifiable list of elements
+     */
+    public List<E> getElements() {
+        return elements;
+    }
+    
+    /**
+     * Returns the token which can be passed to {@link KeysetPager#page(org.hibernate.Session, String)}
+     * to fetch the following page.
+     * 
+     * @return the continuation token or null if this is the last page
+     */
+    public String getContinuation() {
+        return continuation;
+    }
+    
+    /**
+     * Checks whether this is the last page.
+     * 
+     * @return true if there are no following pages
+     */
+    public boolean isLast() {
+        return continuation == null;
+    }
+    
+}
@@ -0,0 +1,302 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.apache.commons.lang.StringUtils;
+import org.hibernate.Criteria;
+import org.hibernate.EntityMode;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.criterion.Conjunction;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Disjunction;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.impl.CriteriaImpl;
+import org.hibernate.metadata.ClassMetadata;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * Pages through the results of a {@link DetachedCriteria} using keyset ("seek") pagination
+ * instead of {@link Criteria#setFirstResult(int)}.
+ * 
+ * <p>
+ *   Every page is fetched using a predicate on a unique, possibly composite, sort key
+ *   like {@code (a > ?) or (a = ? and b > ?)}, so fetching page n costs the same as fetching
+ *   the first page, given an index on the sort key. The criteria must select root entities,
+ *   every key property must be a non-null simple property (or the identifier) of the root entity
+ *   and the key values must be {@link Long}s, {@link Integer}s, {@link String}s or {@link Date}s.
+ *   The pager orders by the key properties itself, the given criteria must not contain any orders.
+ * </p>
+ * 
+ * <p>
+ *   Continuation tokens are plain text and contain the sort key of the last element of a page.
+ *   They can be passed to clients to support stateless paging. {@link Timestamp}s are encoded
+ *   including their nanoseconds.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ * @param <E> the generic element type
+ */
+public final class KeysetPager<E> {
+
+    private static final String ENCODING = "UTF-8";
+    private static final char SEPARATOR = ',';
+    
+    private final DetachedCriteria criteria;
+    private final int pageSize;
+    private final String[] keyProperties;
+    
+    /**
+     * Creates a new pager. The criteria is copied, later changes have no effect on this pager.
+     * 
+     * @param criteria the criteria selecting the root entities
+     * @param pageSize the number of elements per page
+     * @param keyProperties the properties of the unique sort key
+     * @throws NullPointerException if criteria is null
+     * @throws IllegalArgumentException if pageSize is not positive, no key properties are given
+     *         or the criteria contains orders
+     */
+    public KeysetPager(DetachedCriteria criteria, int pageSize, String... keyProperties) {
+        Preconditions.checkNotNull(criteria, "Criteria");
+        this.criteria = DetachedCriteria.class.cast(SerializationUtils.clone(criteria));
+        Preconditions.checkArgument(pageSize > 0, "PageSize must be positive, but was %s", pageSize);
+        this.pageSize = pageSize;
+        Preconditions.checkArgument(keyProperties.length > 0, "At least one key property is required");
+        this.keyProperties = keyProperties.clone();
+        Preconditions.checkArgument(!isOrdered(this.criteria), 
+            "Criteria must not contain orders, it will be ordered by %s", Arrays.toString(keyProperties));
+    }
+    
+    private static boolean isOrdered(DetachedCriteria criteria) {
+        // getExecutableCriteria binds the instance to no session, which is fine for our private copy
+        final CriteriaImpl impl = CriteriaImpl.class.cast(criteria.getExecutableCriteria(null));
+        return impl.iterateOrderings().hasNext();
+    }
+    
+    /**
+     * Fetches the first page.
+     * 
+     * @param session the current session
+     * @return the first page
+     */
+    public KeysetPage<E> first(Session session) {
+        return page(session, null);
+    }
+    
+    /**
+     * Fetches the page following the given continuation token.
+     * 
+     * @param session the current session
+     * @param continuation the token of the previous page, null for the first page
+     * @return the next page
+     * @throws IllegalArgumentException if continuation is malformed
+     */
+    public KeysetPage<E> page(Session session, String continuation) {
+        final Object[] last = continuation == null ? null : decode(continuation);
+        final List<E> elements = fetch(session, last);
+        if (elements.size() < pageSize) {
+            return new KeysetPage<E>(Collections.unmodifiableList(elements), null);
+        } else {
+            final Object[] key = keyOf(session, elements.get(elements.size() - 1));
+            return new KeysetPage<E>(Collections.unmodifiableList(elements), encode(key));
+        }
+    }
+    
+    /**
+     * Provides a lazy iterator which fetches all pages one after another.
+     * 
+     * @param session the current session
+     * @return an iterator over all elements
+     */
+    public Iterator<E> iterator(final Session session) {
+        return new AbstractIterator<E>() {
+            
+            private Iterator<E> page = Collections.<E>emptyList().iterator();
+            private Object[] last;
+            private boolean exhausted;
+            
+            @Override
+            protected E computeNext() {
+                if (!page.hasNext()) {
+                    if (exhausted) return endOfData();
+                    final List<E> elements = fetch(session, last);
+                    exhausted = elements.size() < pageSize;
+                    if (elements.isEmpty()) return endOfData();
+                    last = keyOf(session, elements.get(elements.size() - 1));
+                    page = elements.iterator();
+                }
+                return page.next();
+            }
+            
+        };
+    }
+    
+    private List<E> fetch(Session session, Object[] last) {
+        final DetachedCriteria copy = DetachedCriteria.class.cast(SerializationUtils.clone(criteria));
+        final Criteria executable = copy.getExecutableCriteria(session);
+        if (last != null) {
+            executable.add(after(last));
+        }
+        for (String keyProperty : keyProperties) {
+            executable.addOrder(Order.asc(keyProperty));
+        }
+        @SuppressWarnings("unchecked")
+        final List<E> list = executable.setMaxResults(pageSize).list();
+        return list;
+    }
+    
+    /**
+     * Renders (k1 > v1) or (k1 = v1 and k2 > v2) or ...
+     */
+    private Criterion after(Object[] last) {
+        final Disjunction disjunction = Restrictions.disjunction();
+        for (int i = 0; i < keyProperties.length; i++) {
+            final Conjunction conjunction = Restrictions.conjunction();
+            for (int j = 0; j < i; j++) {
+                conjunction.add(Restrictions.eq(keyProperties[j], last[j]));
+            }
+            conjunction.add(Restrictions.gt(keyProperties[i], last[i]));
+            disjunction.add(conjunction);
+        }
+        return disjunction;
+    }
+    
+    private Object[] keyOf(Session session, E element) {
+        final ClassMetadata metadata = session.getSessionFactory().getClassMetadata(Hibernate.getClass(element));
+        if (metadata == null) {
+            throw new IllegalArgumentException(element.getClass().getName() + " is not a mapped entity");
+        }
+        final Object[] key = new Object[keyProperties.length];
+        for (int i = 0; i < keyProperties.length; i++) {
+            if (keyProperties[i].equals(metadata.getIdentifierPropertyName())) {
+                key[i] = session.getIdentifier(element);
+            } else {
+                key[i] = metadata.getPropertyValue(element, keyProperties[i], EntityMode.POJO);
+            }
+        }
+        return key;
+    }
+    
+    /**
+     * Encodes the given key to a continuation token.
+     * 
+     * @param key the key values
+     * @return the token
+     * @throws IllegalArgumentException if a key value is not supported
+     */
+    String encode(Object[] key) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < key.length; i++) {
+            if (i > 0) builder.append(SEPARATOR);
+            final Object value = key[i];
+            if (value instanceof Long) {
+                builder.append('L').append(value);
+            } else if (value instanceof Integer) {
+                builder.append('I').append(value);
+            } else if (value instanceof String) {
+                builder.append('S').append(urlEncode(String.class.cast(value)));
+            } else if (value instanceof Timestamp) {
+                final Timestamp timestamp = Timestamp.class.cast(value);
+                builder.append('T').append(timestamp.getTime()).append('.').append(timestamp.getNanos());
+            } else if (value instanceof Date) {
+                builder.append('D').append(Date.class.cast(value).getTime());
+            } else {
+                throw new IllegalArgumentException("Unsupported key value " + value + " for " + keyProperties[i]);
+            }
+        }
+        return builder.toString();
+    }
+    
+    /**
+     * Decodes a continuation token.
+     * 
+     * @param continuation the token
+     * @return the key values
+     * @throws IllegalArgumentException if continuation is malformed
+     */
+    Object[] decode(String continuation) {
+        final String[] parts = StringUtils.splitPreserveAllTokens(continuation, SEPARATOR);
+        Preconditions.checkArgument(parts.length == keyProperties.length, "Malformed continuation %s", continuation);
+        final Object[] key = new Object[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            Preconditions.checkArgument(parts[i].length() > 0, "Malformed continuation %s", continuation);
+            final String value = parts[i].substring(1);
+            switch (parts[i].charAt(0)) {
+                case 'L': {
+                    key[i] = Long.valueOf(value);
+                    break;
+                }
+                case 'I': {
+                    key[i] = Integer.valueOf(value);
+                    break;
+                }
+                case 'S': {
+                    key[i] = urlDecode(value);
+                    break;
+                }
+                case 'D': {
+                    key[i] = new Date(Long.parseLong(value));
+                    break;
+                }
+                case 'T': {
+                    final int dot = value.lastIndexOf('.');
+                    Preconditions.checkArgument(dot > 0, "Malformed continuation %s", continuation);
+                    final Timestamp timestamp = new Timestamp(Long.parseLong(value.substring(0, dot)));
+                    timestamp.setNanos(Integer.parseInt(value.substring(dot + 1)));
+                    key[i] = timestamp;
+                    break;
+                }
+                default: {
+                    throw new IllegalArgumentException("Malformed continuation " + continuation);
+                }
+            }
+        }
+        return key;
+    }
+    
+    private static String urlEncode(String value) {
+        try {
+            return URLEncoder.encode(value, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static String urlDecode(String value) {
+        try {
+            return URLDecoder.decode(value, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.cosmocode.hibernate;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * An immutable Aho-Corasick automaton which finds all keywords occurring in a text
+ * in time linear to the length of the text (plus the number of occurrences).
+ * 
+ * <p>
+ *   Every keyword is associated with a value, values of keywords occurring in a text
+ *   according to a {@link PropertyMatchMode} are returned by {@link #match(String, PropertyMatchMode)}.
+ *   Keywords and texts are compared char by char, case folding is up to the caller.
+ * </p>
+ * 
+ * @see ReverseIlikeMatcher
+ *
+ * @param <V> the generic value type
+ * @author Willi Schoenborn
+ */
+final class KeywordAutomaton<V> {
+
+    private final Node<V> root = new Node<V>(0);
+    
+    /**
+     * Builds a new automaton.
+     * 
+     * @param keywords the keyword of every value
+     */
+    public KeywordAutomaton(Map<V, String> keywords) {
+        for (Map.Entry<V, String> entry : keywords.entrySet()) {
+            Node<V> node = root;
+            final String keyword = entry.getValue();
+            for (int i = 0; i < keyword.length(); i++) {
+                final Character c = Character.valueOf(keyword.charAt(i));
+                Node<V> child = node.children.get(c);
+                if (child == null) {
+                    child = new Node<V>(node.depth + 1);
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            if (node.values == null) node.values = new HashSet<V>();
+            node.values.add(entry.getKey());
+        }
+        link();
+    }
+    
+    /**
+     * Computes failure and output links in breadth-first order.
+     */
+    private void link() {
+        final Queue<Node<V>> queue = new LinkedList<Node<V>>();
+        for (Node<V> child : root.children.values()) {
+            child.failure = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            final Node<V> node = queue.remove();
+            for (Map.Entry<Character, Node<V>> entry : node.children.entrySet()) {
+                final Character c = entry.getKey();
+                final Node<V> child = entry.getValue();
+                Node<V> failure = node.failure;
+                while (failure != root && !failure.children.containsKey(c)) {
+                    failure = failure.failure;
+                }
+                final Node<V> target = failure.children.get(c);
+                child.failure = target == null ? root : target;
+                // the nearest proper suffix which is a keyword, the root (empty keyword) is handled separately
+                child.output = child.failure.values == null ? child.failure.output : child.failure;
+                if (child.output == root) child.output = null;
+                queue.add(child);
+            }
+        }
+    }
+    
+    /**
+     * Finds the values of all keywords occurring in the given text.
+     * 
+     * @param text the text to search in
+     * @param mode the mode which decides where keywords have to occur
+     * @return a new set of values
+     */
+    public Set<V> match(String text, PropertyMatchMode mode) {
+        final Set<V> result = new HashSet<V>();
+        final int length = text.length();
+        
+        // the empty keyword occurs at every position, just like '%' || '' || '%' matches every text
+        if (root.values != null && (mode.matches(0, 0, length) || mode.matches(length, length, length))) {
+            result.addAll(root.values);
+        }
+        
+        Node<V> node = root;
+        for (int i = 0; i < length; i++) {
+            final Character c = Character.valueOf(text.charAt(i));
+            while (node != root && !node.children.containsKey(c)) {
+                node = node.failure;
+            }
+            final Node<V> next = node.children.get(c);
+            node = next == null ? root : next;
+            
+            final int end = i + 1;
+            for (Node<V> hit = node.values == null ? node.output : node; hit != null; hit = hit.output) {
+                if (mode.matches(end - hit.depth, end, length)) {
+                    result.addAll(hit.values);
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * A state of the automaton.
+     *
+     * @param <V> the generic value type
+     * @author Willi Schoenborn
+     */
+    private static final class Node<V> {
+        
+        private final Map<Character, Node<V>> children = new HashMap<Character, Node<V>>();
+        
+        private final int depth;
+        
+        private Node<V> failure;
+        
+        private Node<V> output;
+        
+        private Set<V> values;
+        
+        public Node(int depth) {
+            this.depth = depth;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.hibernate.HibernateException;
+import org.hibernate.usertype.UserType;
+
+import com.google.common.base.Objects;
+
+/**
+ * A {@link UserType} for storing {@link EnumSet}s of enums with more
+ * than 64 constants as bitsets spread over several BIGINT columns.
+ * 
+ * <p>
+ *   Constant n is stored in bit n % 64 of column n / 64, so the first column
+ *   uses the same layout as {@link EnumSetUserType}. Properties have to be mapped
+ *   to as many columns as {@link #sqlTypes()} returns. {@link CustomRestrictions#has(String, Enum)}
+ *   and its siblings work across all columns.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ * @param <E> the generic enum type
+ */
+public abstract class LargeEnumSetUserType<E extends Enum<E>> implements UserType {
+    
+    private final Class<E> type;
+    private final int[] sqlTypes;
+
+    protected LargeEnumSetUserType(Class<E> type) {
+        this.type = type;
+        this.sqlTypes = new int[EnumWords.words(type)];
+        Arrays.fill(sqlTypes, Types.BIGINT);
+    }
+
+    @Override
+    public int[] sqlTypes() {
+        return sqlTypes.clone();
+    }
+    
+    @Override
+    public Class<?> returnedClass() {
+        return Set.class;
+    }
+    
+    @Override
+    public boolean equals(Object x, Object y) {
+        return Objects.equal(x, y);
+    }
+    
+    @Override
+    public Object deepCopy(Object value) {
+        if (value == null) return null;
+        if (value instanceof EnumSet<?>) return EnumSet.class.cast(value).clone();
+        @SuppressWarnings("unchecked")
+        final Collection<E> values = Collection.class.cast(value);
+        final Set<E> enums = EnumSet.noneOf(type);
+        enums.addAll(values);
+        return enums;
+    }
+    
+    @Override
+    public boolean isMutable() {
+        return true;
+    }
+    
+    @Override
+    public Object nullSafeGet(ResultSet resultSet, String[] names, Object owner) 
+        throws HibernateException, SQLException {
+        final long[] words = new long[sqlTypes.length];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = resultSet.getLong(names[i]);
+        }
+        return EnumWords.decode(type, words);
+    }
+    
+    @Override
+    public void nullSafeSet(PreparedStatement statement, Object value, int index) 
+        throws HibernateException, SQLException {
+        final long[] words;
+        if (value == null) {
+            words = new long[sqlTypes.length];
+        } else {
+            @SuppressWarnings("unchecked")
+            final Collection<E> enums = Collection.class.cast(value);
+            words = EnumWords.encode(enums, sqlTypes.length);
+        }
+        for (int i = 0; i < words.length; i++) {
+            statement.setLong(index + i, words[i]);
+        }
+    }
+    
+    @Override
+    public Object assemble(Serializable cached, Object owner) throws HibernateException {
+        return cached == null ? null : EnumWords.decode(type, long[].class.cast(cached));
+    }
+
+    @Override
+    public Serializable disassemble(Object value) throws HibernateException {
+        if (value == null) return null;
+        @SuppressWarnings("unchecked")
+        final Collection<E> enums = Collection.class.cast(value);
+        return EnumWords.encode(enums, sqlTypes.length);
+    }
+    
+    @Override
+    public int hashCode(Object x) throws HibernateException {
+        return x.hashCode();
+    }
+
+    @Override
+    public Object replace(Object original, Object target, Object owner) throws HibernateException {
+        return original;
+    }
+
+}
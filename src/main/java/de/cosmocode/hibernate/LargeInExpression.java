@@ -0,0 +1,165 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.cosmocode.hibernate;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.TypedValue;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A version of {@link Restrictions#in(String, Collection)} suitable for huge collections.
+ * 
+ * <p>
+ *   Distinct values are padded by repeating the last value, which limits the number of
+ *   distinct statements (and plans) to one per bucket instead of one per collection size.
+ *   Collections fitting into a single in-list (see {@link CriteriaDialect#getMaxInListSize()})
+ *   are padded to the next power of two, larger ones are padded to the next multiple of the
+ *   in-list size and split into equally sized chunks:
+ *   <pre>
+ *     (my_column in (?, ?, ...) or my_column in (?, ?, ...))
+ *   </pre>
+ *   Padding always leaves {@value #RESERVED_PARAMETERS} of the maximum number of parameters
+ *   per statement of the current database (see {@link CriteriaDialect#getMaxParameters()})
+ *   to the other criteria of the statement. Collections which would exceed that limit when
+ *   padded are not padded at all, collections with more distinct values than parameters
+ *   allowed are rejected with a {@link HibernateException} when rendered. Rendered fragments
+ *   of padded collections are cached by the {@link CriteriaDialect} of the current session factory.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ */
+public class LargeInExpression implements Criterion {
+
+    /**
+     * The number of parameters per statement which padding leaves to other criteria.
+     */
+    public static final int RESERVED_PARAMETERS = 100;
+    
+    private static final long serialVersionUID = 3409824610379548265L;
+    
+    private final String propertyName;
+    private final Object[] values;
+    
+    protected LargeInExpression(String propertyName, Collection<?> values) {
+        Preconditions.checkArgument(!values.isEmpty(), "Values must not be empty");
+        this.propertyName = propertyName;
+        this.values = new LinkedHashSet<Object>(values).toArray();
+    }
+    
+    /**
+     * Computes the padded size of size values. Sizes up to chunk are rounded up
+     * to the next power of two, larger sizes to the next multiple of chunk. Sizes whose
+     * padded size would leave less than {@link #RESERVED_PARAMETERS} of maxParameters
+     * are not padded.
+     * 
+     * @param size the number of values, has to be positive
+     * @param chunk the in-list size, has to be a power of two
+     * @param maxParameters the maximum number of parameters per statement
+     * @return the bucket size
+     * @throws HibernateException if size exceeds maxParameters
+     */
+    static int bucket(int size, int chunk, int maxParameters) {
+        if (size > maxParameters) {
+            throw new HibernateException(String.format(
+                "%s values exceed the maximum of %s parameters per statement", size, maxParameters
+            ));
+        }
+        final int padded = pad(size, chunk);
+        return padded > maxParameters - RESERVED_PARAMETERS ? size : padded;
+    }
+    
+    private static int pad(int size, int chunk) {
+        if (size <= chunk) {
+            final int highest = Integer.highestOneBit(size);
+            return highest == size ? size : highest << 1;
+        } else {
+            return (size + chunk - 1) / chunk * chunk;
+        }
+    }
+    
+    private int bucket(CriteriaDialect dialect) {
+        return bucket(values.length, chunk(dialect), dialect.getMaxParameters());
+    }
+    
+    private static int chunk(CriteriaDialect dialect) {
+        return Integer.highestOneBit(dialect.getMaxInListSize());
+    }
+    
+    @Override
+    public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+        final String[] columns = criteriaQuery.getColumnsUsingProjection(criteria, propertyName);
+        if (columns.length != 1) {
+            throw new HibernateException("large in-lists may only be used with single-column properties");
+        }
+        final String column = columns[0];
+        final CriteriaDialect dialect = CriteriaDialect.of(criteriaQuery.getFactory());
+        final int size = bucket(dialect);
+        final int chunk = Math.min(size, chunk(dialect));
+        
+        // unpadded sizes are arbitrary and would flood the cache with huge fragments
+        final boolean cacheable = pad(size, chunk(dialect)) == size;
+        
+        // the chunk size is fixed per dialect, so the size is sufficient
+        final CriteriaDialect.FragmentKey key = 
+            new CriteriaDialect.FragmentKey(LargeInExpression.class, column, null, size);
+        final String cached = cacheable ? dialect.getFragment(key) : null;
+        if (cached != null) return cached;
+        
+        final int chunks = (size + chunk - 1) / chunk;
+        final StringBuilder builder = new StringBuilder(size * 3 + chunks * (column.length() + 12));
+        if (chunks > 1) builder.append("(");
+        for (int i = 0; i < chunks; i++) {
+            if (i > 0) builder.append(" or ");
+            builder.append(column).append(" in (");
+            final int length = Math.min(chunk, size - i * chunk);
+            for (int j = 0; j < length; j++) {
+                if (j > 0) builder.append(", ");
+                builder.append("?");
+            }
+            builder.append(")");
+        }
+        if (chunks > 1) builder.append(")");
+        return cacheable ? dialect.putFragment(key, builder.toString()) : builder.toString();
+    }
+    
+    @Override
+    public TypedValue[] getTypedValues(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+        final int size = bucket(CriteriaDialect.of(criteriaQuery.getFactory()));
+        final TypedValue[] typedValues = new TypedValue[size];
+        for (int i = 0; i < values.length; i++) {
+            typedValues[i] = criteriaQuery.getTypedValue(criteria, propertyName, values[i]);
+        }
+        Arrays.fill(typedValues, values.length, size, typedValues[values.length - 1]);
+        return typedValues;
+    }
+    
+    @Override
+    public String toString() {
+        return propertyName + " in (" + values.length + " values)";
+    }
+    
+}
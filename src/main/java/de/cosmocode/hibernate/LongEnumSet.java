@@ -0,0 +1,203 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An immutable {@link java.util.Set} of enum constants backed by a single long,
+ * using the same bit layout as {@link EnumSetUserType}.
+ * 
+ * <p>
+ *   All mutating methods throw {@link UnsupportedOperationException}. Use
+ *   {@link #with(Enum)} and {@link #without(Enum)} to derive modified sets.
+ * </p>
+ *
+ * @see ImmutableEnumSetUserType
+ *
+ * @author Willi Schoenborn
+ * @param <E> the generic enum type
+ */
+public final class LongEnumSet<E extends Enum<E>> extends AbstractSet<E> implements Serializable {
+
+    private static final long serialVersionUID = -2086154935815637474L;
+    
+    private final E[] universe;
+    private final long bits;
+    
+    private LongEnumSet(E[] universe, long bits) {
+        this.universe = universe;
+        this.bits = bits;
+    }
+    
+    private static <E extends Enum<E>> E[] universe(Class<E> type) {
+        final E[] universe = type.getEnumConstants();
+        Preconditions.checkArgument(universe.length <= Long.SIZE, 
+            "%s has more than %s constants", type, Long.SIZE);
+        return universe;
+    }
+    
+    private static long mask(Enum<?>[] universe) {
+        return universe.length == Long.SIZE ? -1L : (1L << universe.length) - 1;
+    }
+    
+    /**
+     * Creates a set containing all constants whose bits are set in the given flag.
+     * Unknown bits are ignored.
+     * 
+     * @param <E> the generic enum type
+     * @param type the enum type
+     * @param bits the bitset representation
+     * @return a new set
+     * @throws IllegalArgumentException if type has more than 64 constants
+     */
+    public static <E extends Enum<E>> LongEnumSet<E> of(Class<E> type, long bits) {
+        final E[] universe = universe(type);
+        return new LongEnumSet<E>(universe, bits & mask(universe));
+    }
+    
+    /**
+     * Creates a set containing all given constants.
+     * 
+     * @param <E> the generic enum type
+     * @param type the enum type
+     * @param values the constants
+     * @return a new set
+     * @throws IllegalArgumentException if type has more than 64 constants
+     */
+    public static <E extends Enum<E>> LongEnumSet<E> copyOf(Class<E> type, Collection<E> values) {
+        if (values instanceof LongEnumSet<?>) {
+            @SuppressWarnings("unchecked")
+            final LongEnumSet<E> set = (LongEnumSet<E>) values;
+            return set;
+        }
+        long bits = 0;
+        for (E e : values) {
+            bits |= 1L << e.ordinal();
+        }
+        return new LongEnumSet<E>(universe(type), bits);
+    }
+    
+    /**
+     * Returns the bitset representation of this set.
+     * 
+     * @return the bits
+     */
+    public long getBits() {
+        return bits;
+    }
+    
+    /**
+     * Returns a set containing all elements of this set and the given constant.
+     * 
+     * @param e the constant to add
+     * @return a new set or this, if e is already contained
+     */
+    public LongEnumSet<E> with(E e) {
+        final long added = bits | 1L << e.ordinal();
+        return added == bits ? this : new LongEnumSet<E>(universe, added);
+    }
+    
+    /**
+     * Returns a set containing all elements of this set except the given constant.
+     * 
+     * @param e the constant to remove
+     * @return a new set or this, if e is not contained
+     */
+    public LongEnumSet<E> without(E e) {
+        final long removed = bits & ~(1L << e.ordinal());
+        return removed == bits ? this : new LongEnumSet<E>(universe, removed);
+    }
+    
+    @Override
+    public boolean contains(Object o) {
+        if (!universe.getClass().getComponentType().isInstance(o)) return false;
+        return (bits & 1L << Enum.class.cast(o).ordinal()) != 0;
+    }
+    
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        if (c instanceof LongEnumSet<?>) {
+            final LongEnumSet<?> other = (LongEnumSet<?>) c;
+            if (other.universe.getClass() == universe.getClass()) {
+                return (other.bits & ~bits) == 0;
+            }
+        }
+        return super.containsAll(c);
+    }
+    
+    @Override
+    public int size() {
+        return Long.bitCount(bits);
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return bits == 0;
+    }
+    
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            
+            private long remaining = bits;
+            
+            @Override
+            public boolean hasNext() {
+                return remaining != 0;
+            }
+            
+            @Override
+            public E next() {
+                if (remaining == 0) throw new NoSuchElementException();
+                final int ordinal = Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                return universe[ordinal];
+            }
+            
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+            
+        };
+    }
+    
+    @Override
+    public boolean equals(Object that) {
+        if (this == that) {
+            return true;
+        } else if (that instanceof LongEnumSet<?>) {
+            final LongEnumSet<?> other = (LongEnumSet<?>) that;
+            return bits == other.bits && (bits == 0 || universe.getClass() == other.universe.getClass());
+        } else {
+            return super.equals(that);
+        }
+    }
+    
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+    
+}
@@ -43,9 +43,12 @@ public final class MySQLRestrictions {
      * @param columnName the name of the column the constraint should be applied to
      * @param flag the bits the column should contain
      * @return a new {@link Criterion}
+     * @deprecated use {@link BitwiseRestrictions#containsAny(String, long)}, which
+     *             binds its parameter and works with every dialect
      */
+    @Deprecated
     public static Criterion bitContains(String columnName, long flag) {
-        return MySQLRestrictions.bit(columnName, "&", flag, ">", 0);
+        return MySQLRestrictions.bit(columnName, "&", flag, "<>", 0);
     }
     
 }
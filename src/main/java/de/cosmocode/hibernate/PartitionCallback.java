@@ -0,0 +1,44 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Iterator;
+
+/**
+ * A callback which processes the rows of a single partition
+ * of a {@link PartitionedScroll}.
+ * 
+ * <p>
+ *   Implementations must be thread-safe, because partitions are
+ *   processed concurrently.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ * @param <E> the generic element type
+ */
+public interface PartitionCallback<E> {
+
+    /**
+     * Processes all rows of one partition. The iterator is only valid
+     * during this call.
+     * 
+     * @param partition the zero-based index of the partition
+     * @param iterator the rows of this partition
+     */
+    void process(int partition, Iterator<E> iterator);
+    
+}
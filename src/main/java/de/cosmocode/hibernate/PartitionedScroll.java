@@ -0,0 +1,269 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.impl.CriteriaImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Scrolls a {@link DetachedCriteria} in parallel by splitting it into disjoint
+ * ranges of an ordered numeric key property.
+ * 
+ * <p>
+ *   The key range is determined by selecting min and max of the key property, ignoring
+ *   the orders of the given criteria, and is split into equally wide partitions. Every partition is scrolled in its own
+ *   {@link Session} and transaction using {@link Scrolling#forwardOnly(Session, Criteria)}
+ *   and passed to the {@link PartitionCallback} on a thread of the given executor.
+ * </p>
+ * 
+ * <p>
+ *   Supported key types are {@link Long}, {@link Integer}, {@link Short} and {@link Byte}.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ * @param <E> the generic element type
+ */
+public final class PartitionedScroll<E> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PartitionedScroll.class);
+    
+    private final SessionFactory factory;
+    private final DetachedCriteria criteria;
+    private final String keyProperty;
+    private final int partitions;
+    
+    public PartitionedScroll(SessionFactory factory, DetachedCriteria criteria, String keyProperty, int partitions) {
+        this.factory = Preconditions.checkNotNull(factory, "Factory");
+        this.criteria = Preconditions.checkNotNull(criteria, "Criteria");
+        this.keyProperty = Preconditions.checkNotNull(keyProperty, "KeyProperty");
+        Preconditions.checkArgument(partitions > 0, "Partitions must be positive, but was %s", partitions);
+        this.partitions = partitions;
+    }
+    
+    /**
+     * Processes all partitions using a fixed thread pool of the given size.
+     * 
+     * @param threads the number of threads
+     * @param callback the callback which processes every partition
+     * @throws InterruptedException if the current thread has been interrupted while waiting
+     * @throws HibernateException if processing a partition failed
+     */
+    public void run(int threads, PartitionCallback<E> callback) throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            run(executor, callback);
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    /**
+     * Processes all partitions using the given executor and waits until all partitions are done.
+     * 
+     * @param executor the executor used to process partitions
+     * @param callback the callback which processes every partition
+     * @throws InterruptedException if the current thread has been interrupted while waiting
+     * @throws HibernateException if processing a partition failed
+     */
+    public void run(ExecutorService executor, PartitionCallback<E> callback) throws InterruptedException {
+        Preconditions.checkNotNull(executor, "Executor");
+        Preconditions.checkNotNull(callback, "Callback");
+        
+        final Number[] bounds = bounds();
+        if (bounds == null) {
+            LOG.debug("No rows found, skipping partitioned scroll");
+            return;
+        }
+        
+        final List<Future<?>> futures = new ArrayList<Future<?>>(partitions);
+        for (int i = 0; i < bounds.length - 1; i++) {
+            final boolean last = i == bounds.length - 2;
+            if (!last && bounds[i].longValue() == bounds[i + 1].longValue()) continue;
+            futures.add(executor.submit(new Partition(i, bounds[i], bounds[i + 1], last, callback)));
+        }
+        
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw RuntimeException.class.cast(e.getCause());
+            } else if (e.getCause() instanceof Error) {
+                throw Error.class.cast(e.getCause());
+            } else {
+                throw new HibernateException(e.getCause());
+            }
+        }
+    }
+    
+    /**
+     * Computes partitions + 1 boundaries, where the last one is inclusive.
+     * 
+     * @return the boundaries or null if there are no rows
+     */
+    private Number[] bounds() {
+        final Session session = factory.openSession();
+        try {
+            final CriteriaImpl executable = CriteriaImpl.class.cast(copy().getExecutableCriteria(session));
+            // ordering an aggregate by non-grouped columns is rejected by e.g. PostgreSQL
+            final Iterator<?> orderings = executable.iterateOrderings();
+            while (orderings.hasNext()) {
+                orderings.next();
+                orderings.remove();
+            }
+            final Object[] minMax = (Object[]) executable.setProjection(
+                Projections.projectionList().
+                    add(Projections.min(keyProperty)).
+                    add(Projections.max(keyProperty))
+            ).uniqueResult();
+            
+            if (minMax == null || minMax[0] == null) return null;
+            
+            final Number min = Number.class.cast(minMax[0]);
+            final Number max = Number.class.cast(minMax[1]);
+            final BigInteger low = BigInteger.valueOf(min.longValue());
+            final BigInteger span = BigInteger.valueOf(max.longValue()).subtract(low);
+            final BigInteger count = BigInteger.valueOf(partitions);
+            
+            final Number[] bounds = new Number[partitions + 1];
+            for (int i = 0; i < partitions; i++) {
+                final long bound = low.add(span.multiply(BigInteger.valueOf(i)).divide(count)).longValue();
+                bounds[i] = box(bound, min);
+            }
+            bounds[partitions] = max;
+            LOG.debug("Partitioning {} from {} to {} into {} ranges", new Object[] {keyProperty, min, max, partitions});
+            return bounds;
+        } finally {
+            session.close();
+        }
+    }
+    
+    private static Number box(long value, Number sample) {
+        if (sample instanceof Long) {
+            return Long.valueOf(value);
+        } else if (sample instanceof Integer) {
+            return Integer.valueOf((int) value);
+        } else if (sample instanceof Short) {
+            return Short.valueOf((short) value);
+        } else if (sample instanceof Byte) {
+            return Byte.valueOf((byte) value);
+        } else {
+            throw new IllegalArgumentException("Unsupported key type " + sample.getClass().getName());
+        }
+    }
+    
+    /**
+     * Copies the criteria, because {@link DetachedCriteria#getExecutableCriteria(Session)}
+     * binds the shared instance to a session.
+     * 
+     * @return a copy of the criteria
+     */
+    private DetachedCriteria copy() {
+        return DetachedCriteria.class.cast(SerializationUtils.clone(criteria));
+    }
+    
+    /**
+     * A single key range.
+     *
+     * @author Willi Schoenborn
+     */
+    private final class Partition implements Callable<Void> {
+        
+        private final int index;
+        private final Number lower;
+        private final Number upper;
+        private final boolean inclusive;
+        private final PartitionCallback<E> callback;
+        
+        public Partition(int index, Number lower, Number upper, boolean inclusive, PartitionCallback<E> callback) {
+            this.index = index;
+            this.lower = lower;
+            this.upper = upper;
+            this.inclusive = inclusive;
+            this.callback = callback;
+        }
+
+        @Override
+        public Void call() {
+            LOG.debug("Scrolling partition #{} of {}", index, keyProperty);
+            final Session session = factory.openSession();
+            boolean committed = false;
+            try {
+                final Transaction transaction = session.beginTransaction();
+                final Criteria partition = copy().getExecutableCriteria(session).
+                    add(Restrictions.ge(keyProperty, lower)).
+                    add(inclusive ? Restrictions.le(keyProperty, upper) : Restrictions.lt(keyProperty, upper));
+                final ScrollableResultsCursor<E> cursor = Scrolling.cursor(session, partition);
+                try {
+                    callback.process(index, cursor);
+                } finally {
+                    cursor.close();
+                }
+                transaction.commit();
+                committed = true;
+                return null;
+            } finally {
+                try {
+                    if (!committed) rollback(session);
+                } finally {
+                    session.close();
+                }
+            }
+        }
+        
+        /**
+         * Rolls back the current transaction, if any. Failures are logged only,
+         * so they don't hide the original cause.
+         */
+        private void rollback(Session session) {
+            try {
+                final Transaction transaction = session.getTransaction();
+                if (transaction.isActive()) transaction.rollback();
+            } catch (RuntimeException e) {
+                LOG.warn("Rollback of partition #" + index + " failed", e);
+            }
+        }
+        
+    }
+    
+}
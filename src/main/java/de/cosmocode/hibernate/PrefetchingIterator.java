@@ -0,0 +1,281 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.HibernateException;
+import org.hibernate.ScrollableResults;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * An {@link Iterator} over {@link ScrollableResults} which prefetches rows in batches
+ * on a background thread while the consumer processes the current batch.
+ * 
+ * <p>
+ *   Prefetched batches are kept in a bounded buffer. Once the buffer is full the
+ *   background thread stops reading from the cursor until the consumer catches up,
+ *   so slow consumers never cause the whole result to be buffered. The background thread
+ *   is the only thread which accesses the results, the owning session must not be used
+ *   by other threads until this iterator is exhausted or closed.
+ * </p>
+ * 
+ * <p>
+ *   Any {@link Throwable} thrown by the background thread is handed over to the consumer
+ *   and rethrown by {@link #next()} or {@link #hasNext()}. Errors are rethrown as they are,
+ *   exceptions are wrapped in a {@link HibernateException} unless they already are one.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ * @param <E> the generic element type
+ */
+public final class PrefetchingIterator<E> extends AbstractIterator<E> implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PrefetchingIterator.class);
+    
+    private static final long OFFER_TIMEOUT = 100;
+    
+    private static final Object END = Collections.emptyList();
+    
+    private final BlockingQueue<Object> buffer;
+    
+    private final ScrollableResultsCursor<E> cursor;
+    
+    private final CountDownLatch done = new CountDownLatch(1);
+    
+    private final Object lock = new Object();
+    
+    // guarded by lock
+    private boolean started;
+    
+    // guarded by lock
+    private Thread producer;
+    
+    private volatile boolean closed;
+    
+    private Iterator<E> current = Collections.<E>emptyList().iterator();
+    
+    /**
+     * Creates a new prefetching iterator which uses a dedicated daemon thread.
+     * 
+     * @param results the results to iterate
+     * @param batchSize the number of rows per batch
+     * @param bufferedBatches the maximum number of batches kept in the buffer
+     */
+    public PrefetchingIterator(ScrollableResults results, int batchSize, int bufferedBatches) {
+        this(results, batchSize, bufferedBatches, new Executor() {
+            
+            @Override
+            public void execute(Runnable command) {
+                final Thread thread = new Thread(command, PrefetchingIterator.class.getSimpleName());
+                thread.setDaemon(true);
+                thread.start();
+            }
+            
+        });
+    }
+    
+    /**
+     * Creates a new prefetching iterator which prefetches using the given executor.
+     * 
+     * @param results the results to iterate
+     * @param batchSize the number of rows per batch
+     * @param bufferedBatches the maximum number of batches kept in the buffer
+     * @param executor the executor used to run the background task
+     */
+    public PrefetchingIterator(ScrollableResults results, int batchSize, int bufferedBatches, Executor executor) {
+        Preconditions.checkNotNull(results, "Results");
+        Preconditions.checkArgument(batchSize > 0, "BatchSize must be positive, but was %s", batchSize);
+        Preconditions.checkArgument(bufferedBatches > 0, 
+            "BufferedBatches must be positive, but was %s", bufferedBatches);
+        Preconditions.checkNotNull(executor, "Executor");
+        this.buffer = new ArrayBlockingQueue<Object>(bufferedBatches);
+        this.cursor = new ScrollableResultsCursor<E>(results);
+        executor.execute(new Producer(batchSize));
+    }
+    
+    @Override
+    protected E computeNext() {
+        while (!current.hasNext()) {
+            if (closed) return endOfData();
+            final Object next;
+            try {
+                next = buffer.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new HibernateException("Interrupted while waiting for next batch", e);
+            }
+            if (next instanceof Failure) {
+                close();
+                throw Failure.class.cast(next).toException();
+            }
+            @SuppressWarnings("unchecked")
+            final List<E> batch = (List<E>) next;
+            if (batch.isEmpty()) {
+                close();
+                return endOfData();
+            }
+            current = batch.iterator();
+        }
+        return current.next();
+    }
+    
+    /**
+     * Stops prefetching. If the background thread is still running, it will be interrupted
+     * and this method blocks until it finished and closed the underlying results. A consumer
+     * waiting for the next batch on another thread is woken up and sees the end of data.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        LOG.trace("Closing {}", this);
+        closed = true;
+        buffer.clear();
+        
+        final boolean running;
+        synchronized (lock) {
+            running = started;
+            started = true;
+            if (producer != null) {
+                producer.interrupt();
+            }
+        }
+        
+        if (running) {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.warn("Interrupted while waiting for prefetching to finish");
+            }
+        } else {
+            // the producer never started and never will
+            cursor.close();
+        }
+        
+        // the producer gave up offering once closed, wake up a consumer blocked in take
+        buffer.clear();
+        buffer.offer(END);
+    }
+    
+    /**
+     * Reads batches from the cursor until it is exhausted or the iterator has been closed.
+     *
+     * @author Willi Schoenborn
+     */
+    private final class Producer implements Runnable {
+        
+        private final int batchSize;
+        
+        public Producer(int batchSize) {
+            this.batchSize = batchSize;
+        }
+        
+        @Override
+        public void run() {
+            synchronized (lock) {
+                if (started) return;
+                started = true;
+                producer = Thread.currentThread();
+            }
+            
+            Object terminal = END;
+            try {
+                while (!closed) {
+                    final List<E> batch = cursor.nextBatch(batchSize);
+                    LOG.trace("Prefetched batch of {} elements", batch.size());
+                    if (batch.isEmpty() || !offer(batch)) break;
+                }
+            } catch (Throwable e) {
+                LOG.debug("Prefetching failed", e);
+                terminal = new Failure(e);
+            } finally {
+                try {
+                    cursor.close();
+                } catch (Throwable e) {
+                    LOG.debug("Closing results failed", e);
+                    if (terminal == END) terminal = new Failure(e);
+                }
+                offer(terminal);
+                synchronized (lock) {
+                    producer = null;
+                }
+                // do not leak a pending interrupt from close() into pooled threads
+                Thread.interrupted();
+                done.countDown();
+            }
+        }
+        
+        /**
+         * Blocks until the element could be added to the buffer or the iterator has been closed.
+         */
+        private boolean offer(Object element) {
+            try {
+                while (!closed) {
+                    if (buffer.offer(element, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) return true;
+                }
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        
+    }
+    
+    /**
+     * Transports a failure from the background thread to the consumer.
+     *
+     * @author Willi Schoenborn
+     */
+    private static final class Failure {
+        
+        private final Throwable cause;
+        
+        public Failure(Throwable cause) {
+            this.cause = cause;
+        }
+        
+        /**
+         * Errors are rethrown directly, everything else is returned as a {@link HibernateException}.
+         */
+        public RuntimeException toException() {
+            if (cause instanceof Error) {
+                throw Error.class.cast(cause);
+            } else if (cause instanceof HibernateException) {
+                return HibernateException.class.cast(cause);
+            } else {
+                return new HibernateException(cause);
+            }
+        }
+        
+    }
+    
+}
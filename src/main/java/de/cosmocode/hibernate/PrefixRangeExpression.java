@@ -0,0 +1,142 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.cosmocode.hibernate;
+
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.MatchMode;
+import org.hibernate.engine.TypedValue;
+
+/**
+ * A {@link Criterion} which restricts a property to values starting with a prefix
+ * using a range, which allows databases to use a plain index on the column.
+ * 
+ * <p>
+ *   A like expression using {@link MatchMode#START} on a lowercased column renders:
+ *   <pre>
+ *     lower(my_column) like ?
+ *   </pre>
+ *   This implementation produces the following:
+ *   <pre>
+ *     (my_column &gt;= ? and my_column &lt; ? and my_column like ? escape '!')
+ *   </pre>
+ *   The upper bound is the {@link #successor(String)} of the prefix. The like expression
+ *   rechecks the rows within the range, but it compares using the collation of the column
+ *   as well. Under case insensitive collations both the range and the like expression
+ *   match case insensitively, so the result is only exact if the column uses a binary
+ *   (code point) collation. Collations that order strings differently from their code
+ *   points (linguistic ones) may also cause false negatives and should not be used with
+ *   this criterion. Case insensitive searches require a shadow column storing the lowercased
+ *   value, see {@link CustomRestrictions#startsWithIgnoreCase(String, String)}.
+ * </p>
+ * 
+ * @author Willi Schoenborn
+ */
+public class PrefixRangeExpression implements Criterion {
+
+    private static final long serialVersionUID = -6204871930153398432L;
+    
+    private static final char ESCAPE = '!';
+    
+    // U+FFFF is followed by supplementary characters in code point order but not in UTF-16 order
+    private static final int MAX_BMP_CODE_POINT = 0xFFFF;
+    
+    private final String propertyName;
+    private final String prefix;
+    private final String successor;
+    
+    protected PrefixRangeExpression(String propertyName, String prefix) {
+        this.propertyName = propertyName;
+        this.prefix = prefix;
+        this.successor = successor(prefix);
+    }
+    
+    /**
+     * Computes the smallest string which is greater than every string starting with
+     * the given prefix, by incrementing the last code point.
+     * 
+     * <p>
+     *   Code points which can't be incremented, i.e. {@link Character#MAX_CODE_POINT} and
+     *   U+FFFF (whose successor sorts differently in UTF-8 and UTF-16), are removed and
+     *   their predecessor is incremented instead. Increments never produce surrogates.
+     * </p>
+     * 
+     * @param prefix the prefix
+     * @return the successor of prefix or null if there is no such string
+     */
+    static String successor(String prefix) {
+        int end = prefix.length();
+        while (end > 0) {
+            final int codePoint = prefix.codePointBefore(end);
+            final int start = end - Character.charCount(codePoint);
+            if (codePoint != Character.MAX_CODE_POINT && codePoint != MAX_BMP_CODE_POINT) {
+                int next = codePoint + 1;
+                if (next >= Character.MIN_SURROGATE && next <= Character.MAX_SURROGATE) {
+                    next = Character.MAX_SURROGATE + 1;
+                }
+                return new StringBuilder(start + 2).append(prefix, 0, start).appendCodePoint(next).toString();
+            }
+            end = start;
+        }
+        return null;
+    }
+    
+    private static String escape(String value) {
+        final StringBuilder builder = new StringBuilder(value.length() + 1);
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == ESCAPE || c == '%' || c == '_') builder.append(ESCAPE);
+            builder.append(c);
+        }
+        return builder.append('%').toString();
+    }
+    
+    @Override
+    public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+        final String[] columns = criteriaQuery.getColumnsUsingProjection(criteria, propertyName);
+        if (columns.length != 1) {
+            throw new HibernateException("prefix ranges may only be used with single-column properties");
+        }
+        final String column = columns[0];
+        if (successor == null) {
+            return "(" + column + " >= ? and " + column + " like ? escape '" + ESCAPE + "')";
+        } else {
+            return "(" + column + " >= ? and " + column + " < ? and " + column + " like ? escape '" + ESCAPE + "')";
+        }
+    }
+    
+    @Override
+    public TypedValue[] getTypedValues(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+        final TypedValue lower = criteriaQuery.getTypedValue(criteria, propertyName, prefix);
+        final TypedValue like = criteriaQuery.getTypedValue(criteria, propertyName, escape(prefix));
+        if (successor == null) {
+            return new TypedValue[] {lower, like};
+        } else {
+            final TypedValue upper = criteriaQuery.getTypedValue(criteria, propertyName, successor);
+            return new TypedValue[] {lower, upper, like};
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return propertyName + " starts with " + prefix;
+    }
+    
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Arrays;
+
+import org.hibernate.HibernateException;
+import org.hibernate.ScrollableResults;
+import org.hibernate.criterion.Projections;
+
+/**
+ * Utility methods for reading scalar numeric columns of {@link ScrollableResults},
+ * e.g. produced by {@link Projections#id()}, into primitive arrays.
+ * 
+ * <p>
+ *   Rows are read in chunks into reusable arrays, which avoids keeping one boxed 
+ *   value per row alive. All methods read the first column of every row and move
+ *   the results forward using {@link ScrollableResults#next()}, so they work with
+ *   forward-only results as well.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ */
+public final class PrimitiveResults {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    
+    private PrimitiveResults() {
+        
+    }
+    
+    private static Number current(ScrollableResults results) {
+        final Object value = results.get(0);
+        if (value == null) {
+            throw new HibernateException("Unexpected null value in row " + results.getRowNumber());
+        }
+        return Number.class.cast(value);
+    }
+    
+    private static int currentInt(ScrollableResults results) {
+        final long value = current(results).longValue();
+        if (value != (int) value) {
+            throw new HibernateException("Value " + value + " in row " + results.getRowNumber() + 
+                " exceeds the int range");
+        }
+        return (int) value;
+    }
+    
+    /**
+     * Reads up to chunk.length rows into the given chunk.
+     * 
+     * @param results the results to read from
+     * @param chunk the array to fill
+     * @return the number of values read, 0 if the results are exhausted
+     * @throws HibernateException if a value is null
+     */
+    public static int fill(ScrollableResults results, long[] chunk) {
+        int count = 0;
+        while (count < chunk.length && results.next()) {
+            chunk[count++] = current(results).longValue();
+        }
+        return count;
+    }
+    
+    /**
+     * Reads up to chunk.length rows into the given chunk.
+     * 
+     * @param results the results to read from
+     * @param chunk the array to fill
+     * @return the number of values read, 0 if the results are exhausted
+     * @throws HibernateException if a value is null or exceeds the int range
+     */
+    public static int fill(ScrollableResults results, int[] chunk) {
+        int count = 0;
+        while (count < chunk.length && results.next()) {
+            chunk[count++] = currentInt(results);
+        }
+        return count;
+    }
+    
+    /**
+     * Reads all remaining rows into a new array.
+     * 
+     * @param results the results to read from
+     * @return an array containing all remaining values
+     * @throws HibernateException if a value is null
+     */
+    public static long[] toLongArray(ScrollableResults results) {
+        long[] values = new long[INITIAL_CAPACITY];
+        int size = 0;
+        while (results.next()) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = current(results).longValue();
+        }
+        return Arrays.copyOf(values, size);
+    }
+    
+    /**
+     * Reads all remaining rows into a new array.
+     * 
+     * @param results the results to read from
+     * @return an array containing all remaining values
+     * @throws HibernateException if a value is null or exceeds the int range
+     */
+    public static int[] toIntArray(ScrollableResults results) {
+        int[] values = new int[INITIAL_CAPACITY];
+        int size = 0;
+        while (results.next()) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = currentInt(results);
+        }
+        return Arrays.copyOf(values, size);
+    }
+    
+}
@@ -40,6 +40,11 @@ public enum PropertyMatchMode {
             return columnName;
         }
         
+        @Override
+        boolean matches(int start, int end, int length) {
+            return start == 0 && end == length;
+        }
+        
     },
     
     START {
@@ -49,6 +54,11 @@ public enum PropertyMatchMode {
             return render(factory, columnName, LIKE_SYMBOL);
         }
         
+        @Override
+        boolean matches(int start, int end, int length) {
+            return start == 0;
+        }
+        
     },
     
     END {
@@ -58,6 +68,11 @@ public enum PropertyMatchMode {
             return render(factory, LIKE_SYMBOL, columnName);
         }
         
+        @Override
+        boolean matches(int start, int end, int length) {
+            return end == length;
+        }
+        
     },
     
     ANYWHERE {
@@ -67,6 +82,11 @@ public enum PropertyMatchMode {
             return render(factory,  LIKE_SYMBOL, columnName, LIKE_SYMBOL);
         }
         
+        @Override
+        boolean matches(int start, int end, int length) {
+            return true;
+        }
+        
     };
     
     private static final String LIKE_SYMBOL = "'%'";
@@ -80,6 +100,18 @@ public enum PropertyMatchMode {
      */
     public abstract String toMatchString(SessionFactoryImplementor factory, String columnName);
     
+    /**
+     * Decides whether a pattern found in a text satisfies this {@link PropertyMatchMode},
+     * i.e. whether the text would be like the pattern rendered by
+     * {@link #toMatchString(SessionFactoryImplementor, String)}.
+     * 
+     * @param start the index of the first char of the pattern in the text
+     * @param end the index after the last char of the pattern in the text
+     * @param length the length of the text
+     * @return true if the occurrence matches, false otherwise
+     */
+    abstract boolean matches(int start, int end, int length);
+    
     // unless a new api is provided
     @SuppressWarnings("deprecation")
     private static String render(SessionFactoryImplementor factory, Object... args) {
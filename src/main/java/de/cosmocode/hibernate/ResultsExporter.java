@@ -0,0 +1,194 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.hibernate.Criteria;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.criterion.Projection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import de.cosmocode.commons.Enums;
+
+/**
+ * Writes scalar rows of {@link ScrollableResults} directly into an {@link OutputStream}
+ * or {@link WritableByteChannel} without hydrating entities.
+ * 
+ * <p>
+ *   Criteria should use a {@link Projection} selecting exactly the exported columns.
+ *   Every row is encoded into a single reused buffer. Values are normalized as follows:
+ *   {@link java.sql.Date}s are written as ISO 8601 dates ({@code yyyy-MM-dd}), other {@link Date}s
+ *   are written as ISO 8601 timestamps in UTC, {@link Enum}s and collections of enums
+ *   (as produced by {@link EnumSetUserType}s) are written as constant names and columns registered
+ *   using {@link #decode(int, Class)} are decoded from raw bit flags into constant names.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ */
+public final class ResultsExporter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResultsExporter.class);
+    
+    private static final String ENCODING = "UTF-8";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String DATE_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
+    
+    private final ExportFormat format;
+    private final String[] columns;
+    private final Class<?>[] flagTypes;
+    
+    public ResultsExporter(ExportFormat format, String... columns) {
+        this.format = Preconditions.checkNotNull(format, "Format");
+        Preconditions.checkArgument(columns.length > 0, "At least one column is required");
+        this.columns = columns.clone();
+        this.flagTypes = new Class<?>[columns.length];
+    }
+    
+    /**
+     * Declares the given column to contain raw bit flags of the given enum type,
+     * encoded as in {@link EnumSetUserType}.
+     * 
+     * @param <E> the generic enum type
+     * @param column the zero-based column index
+     * @param type the enum type
+     * @return this exporter
+     */
+    public <E extends Enum<E>> ResultsExporter decode(int column, Class<E> type) {
+        Preconditions.checkElementIndex(column, columns.length, "Column");
+        flagTypes[column] = Preconditions.checkNotNull(type, "Type");
+        return this;
+    }
+    
+    /**
+     * Scrolls the given criteria forward-only and exports all rows.
+     * The results are closed afterwards.
+     * 
+     * @param session the session the criteria has been created with
+     * @param criteria a criteria using a projection
+     * @param stream the target stream, which will be flushed but not closed
+     * @return the number of exported rows
+     * @throws IOException if writing failed
+     */
+    public long export(Session session, Criteria criteria, OutputStream stream) throws IOException {
+        final ScrollableResults results = Scrolling.forwardOnly(session, criteria);
+        try {
+            return export(results, stream);
+        } finally {
+            results.close();
+        }
+    }
+    
+    /**
+     * Exports all remaining rows of the given results.
+     * 
+     * @param results the results to export
+     * @param channel the target channel, which will not be closed
+     * @return the number of exported rows
+     * @throws IOException if writing failed
+     */
+    public long export(ScrollableResults results, WritableByteChannel channel) throws IOException {
+        return export(results, Channels.newOutputStream(channel));
+    }
+    
+    /**
+     * Exports all remaining rows of the given results.
+     * 
+     * @param results the results to export
+     * @param stream the target stream, which will be flushed but not closed
+     * @return the number of exported rows
+     * @throws IOException if writing failed
+     */
+    public long export(ScrollableResults results, OutputStream stream) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(stream, ENCODING), BUFFER_SIZE);
+        final DateFormat dateFormat = new SimpleDateFormat(DATE_PATTERN);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        final StringBuilder buffer = new StringBuilder();
+        
+        format.header(buffer, columns);
+        writer.append(buffer);
+        
+        final RowIterator iterator = new RowIterator(results);
+        long count = 0;
+        while (iterator.hasNext()) {
+            final ScrollableRow row = iterator.next();
+            buffer.setLength(0);
+            format.begin(buffer);
+            for (int i = 0; i < columns.length; i++) {
+                format.value(buffer, i, columns[i], normalize(i, row.getObject(i), dateFormat));
+            }
+            format.end(buffer);
+            writer.append(buffer);
+            count++;
+        }
+        
+        writer.flush();
+        LOG.debug("Exported {} rows as {}", count, format);
+        return count;
+    }
+    
+    private Object normalize(int column, Object value, DateFormat dateFormat) {
+        if (value == null) {
+            return null;
+        } else if (flagTypes[column] != null && value instanceof Number) {
+            return names(decode(flagTypes[column], Number.class.cast(value).longValue()));
+        } else if (value instanceof java.sql.Date) {
+            // sql dates have no time of day, converting them to utc could shift the day
+            return value.toString();
+        } else if (value instanceof Date) {
+            return dateFormat.format(Date.class.cast(value));
+        } else if (value instanceof Enum<?>) {
+            return Enum.class.cast(value).name();
+        } else if (value instanceof Collection<?>) {
+            return names(Collection.class.cast(value));
+        } else {
+            return value;
+        }
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Set<?> decode(Class<?> type, long flag) {
+        return Enums.decode((Class) type, flag);
+    }
+    
+    private static List<String> names(Collection<?> values) {
+        final List<String> names = new ArrayList<String>(values.size());
+        for (Object value : values) {
+            names.add(value instanceof Enum<?> ? Enum.class.cast(value).name() : String.valueOf(value));
+        }
+        return names;
+    }
+    
+}
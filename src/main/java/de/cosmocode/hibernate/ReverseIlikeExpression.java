@@ -16,13 +16,13 @@
 
 package de.cosmocode.hibernate;
 
+import java.util.Locale;
+
 import org.hibernate.Criteria;
 import org.hibernate.HibernateException;
 import org.hibernate.criterion.CriteriaQuery;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.IlikeExpression;
-import org.hibernate.dialect.Dialect;
-import org.hibernate.dialect.PostgreSQLDialect;
 import org.hibernate.engine.SessionFactoryImplementor;
 import org.hibernate.engine.TypedValue;
 
@@ -41,6 +41,11 @@ import org.hibernate.engine.TypedValue;
  *     ? like lower(concat('%', my_column))
  *   </pre>
  * </p>
+ * 
+ * <p>
+ *   Rendered fragments are cached per column and {@link PropertyMatchMode}
+ *   by the {@link CriteriaDialect} of the current session factory.
+ * </p>
  *
  * @author Willi Schoenborn
  */
@@ -61,25 +66,31 @@ public class ReverseIlikeExpression implements Criterion {
     @Override
     public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
         final SessionFactoryImplementor factory = criteriaQuery.getFactory();
-        final Dialect dialect = factory.getDialect();
+        final CriteriaDialect dialect = CriteriaDialect.of(factory);
         final String[] columns = criteriaQuery.getColumnsUsingProjection(criteria, propertyName);
         
         if (columns.length != 1) throw new HibernateException("ilike may only be used with single-column properties");
         
         final String columnName = columns[0];
+        final CriteriaDialect.FragmentKey key = 
+            new CriteriaDialect.FragmentKey(ReverseIlikeExpression.class, columnName, matchMode, 0L);
+        final String cached = dialect.getFragment(key);
+        if (cached != null) return cached;
+        
         final String s = matchMode.toMatchString(factory, columnName);
         
-        if (dialect instanceof PostgreSQLDialect) {
-            return "? ilike " + s;
+        if (dialect.isIlike()) {
+            return dialect.putFragment(key, "? ilike " + s);
         } else {
-            return "? like " + dialect.getLowercaseFunction() + "(" + s + ")";
+            return dialect.putFragment(key, "? like " + dialect.getLowercaseFunction() + "(" + s + ")");
         }
         
     }
 
     @Override
     public TypedValue[] getTypedValues(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
-        return new TypedValue[] {criteriaQuery.getTypedValue(criteria, propertyName, value.toString().toLowerCase())};
+        final String lowered = value.toString().toLowerCase(Locale.ENGLISH);
+        return new TypedValue[] {criteriaQuery.getTypedValue(criteria, propertyName, lowered)};
     }
 
     @Override
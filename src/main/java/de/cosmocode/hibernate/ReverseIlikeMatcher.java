@@ -0,0 +1,308 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.cosmocode.hibernate;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Criteria;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Projections;
+import org.hibernate.event.PostDeleteEvent;
+import org.hibernate.event.PostDeleteEventListener;
+import org.hibernate.event.PostInsertEvent;
+import org.hibernate.event.PostInsertEventListener;
+import org.hibernate.event.PostUpdateEvent;
+import org.hibernate.event.PostUpdateEventListener;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An in-memory alternative to {@link ReverseIlikeExpression} which finds the identifiers
+ * of all entities whose property occurs in a given text.
+ * 
+ * <p>
+ *   The property values of all entities are loaded once using {@link #load(Session)}
+ *   and compiled into a case-folded Aho-Corasick automaton, which answers
+ *   {@link #match(String, PropertyMatchMode)} in time linear to the length of the text,
+ *   instead of evaluating a like expression for every row. The results can be fed into
+ *   a query using {@link #restriction(String, PropertyMatchMode)} or used to load
+ *   the entities directly. Unlike the database, the matcher treats {@code %} and {@code _}
+ *   in property values literally.
+ * </p>
+ * 
+ * <p>
+ *   Registered as post insert, update and delete listener, the matcher keeps itself
+ *   up to date. Changes are applied immediately, the automaton is rebuilt lazily and
+ *   completely by the next match, see {@link #put(Serializable, Object)} for the cost.
+ *   Rebuilding happens outside of the matcher's monitor on a snapshot of the values,
+ *   so neither changes nor concurrent matches using an up to date automaton have to wait for it.
+ *   Registering the matcher as post-commit listener prevents rolled back changes from being applied:
+ *   <pre>
+ *     final ReverseIlikeMatcher matcher = new ReverseIlikeMatcher(Keyword.class, "value");
+ *     final EventListeners listeners = configuration.getEventListeners();
+ *     listeners.setPostCommitInsertEventListeners(new PostInsertEventListener[] {matcher});
+ *     listeners.setPostCommitUpdateEventListeners(new PostUpdateEventListener[] {matcher});
+ *     listeners.setPostCommitDeleteEventListeners(new PostDeleteEventListener[] {matcher});
+ *   </pre>
+ * </p>
+ *
+ * @author Willi Schoenborn
+ */
+public final class ReverseIlikeMatcher implements PostInsertEventListener, 
+    PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final long serialVersionUID = -4713325836912358317L;
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReverseIlikeMatcher.class);
+    
+    private final String entityName;
+    private final String propertyName;
+    
+    // guarded by this
+    private final Map<Serializable, String> keywords = new HashMap<Serializable, String>();
+    
+    // incremented on every change, written while holding this
+    private volatile long version;
+    
+    private volatile String identifierName;
+    
+    // null if nothing has been built yet, outdated if its version is lower than the current one
+    private transient volatile Snapshot snapshot;
+    
+    public ReverseIlikeMatcher(String entityName, String propertyName) {
+        this.entityName = Preconditions.checkNotNull(entityName, "EntityName");
+        this.propertyName = Preconditions.checkNotNull(propertyName, "PropertyName");
+    }
+    
+    public ReverseIlikeMatcher(Class<?> entityClass, String propertyName) {
+        this(Preconditions.checkNotNull(entityClass, "EntityClass").getName(), propertyName);
+    }
+    
+    /**
+     * Loads the property values of all entities, replacing all current values.
+     * 
+     * @param session the session used to load the values
+     * @throws NullPointerException if session is null
+     */
+    public void load(Session session) {
+        Preconditions.checkNotNull(session, "Session");
+        final ClassMetadata metadata = session.getSessionFactory().getClassMetadata(entityName);
+        Preconditions.checkArgument(metadata != null, "%s is not mapped", entityName);
+        
+        final Criteria criteria = session.createCriteria(entityName).setProjection(
+            Projections.projectionList().add(Projections.id()).add(Projections.property(propertyName))
+        );
+        
+        final Map<Serializable, String> loaded = new HashMap<Serializable, String>();
+        final ScrollableResults results = Scrolling.forwardOnly(session, criteria);
+        try {
+            while (results.next()) {
+                final Object value = results.get(1);
+                if (value == null) continue;
+                loaded.put(Serializable.class.cast(results.get(0)), fold(value));
+            }
+        } finally {
+            results.close();
+        }
+        
+        synchronized (this) {
+            keywords.clear();
+            keywords.putAll(loaded);
+            version++;
+        }
+        identifierName = metadata.getIdentifierPropertyName();
+        LOG.debug("Loaded {} values of {}.{}", new Object[] {loaded.size(), entityName, propertyName});
+    }
+    
+    private static String fold(Object value) {
+        // same case folding as ReverseIlikeExpression
+        return value.toString().toLowerCase(Locale.ENGLISH);
+    }
+    
+    /**
+     * Sets the value of the entity with the given identifier.
+     * 
+     * <p>
+     *   The change itself is cheap, but it outdates the automaton, which the next
+     *   match rebuilds from all values, taking time linear to their total length.
+     *   The automaton is not updated incrementally, so workloads interleaving
+     *   changes and matches pay a full rebuild per match. Such workloads should
+     *   apply changes in batches or match less frequently than they change values.
+     * </p>
+     * 
+     * @param id the identifier of the entity
+     * @param value the new value, null removes the entity
+     * @throws NullPointerException if id is null
+     */
+    public synchronized void put(Serializable id, Object value) {
+        Preconditions.checkNotNull(id, "Id");
+        if (value == null) {
+            remove(id);
+        } else {
+            keywords.put(id, fold(value));
+            version++;
+        }
+    }
+    
+    /**
+     * Removes the entity with the given identifier. Like {@link #put(Serializable, Object)},
+     * this causes the next match to rebuild the automaton.
+     * 
+     * @param id the identifier of the entity
+     * @throws NullPointerException if id is null
+     */
+    public synchronized void remove(Serializable id) {
+        Preconditions.checkNotNull(id, "Id");
+        if (keywords.remove(id) != null) {
+            version++;
+        }
+    }
+    
+    private KeywordAutomaton<Serializable> automaton() {
+        final Snapshot current = snapshot;
+        if (current != null && current.version == version) return current.automaton;
+        
+        final Map<Serializable, String> copy;
+        final long copied;
+        synchronized (this) {
+            copy = new HashMap<Serializable, String>(keywords);
+            copied = version;
+        }
+        
+        // concurrent matches may build the same automaton twice, but no one has to wait
+        LOG.debug("Building automaton of {} values of {}.{}", new Object[] {copy.size(), entityName, propertyName});
+        final KeywordAutomaton<Serializable> built = new KeywordAutomaton<Serializable>(copy);
+        
+        synchronized (this) {
+            if (snapshot == null || snapshot.version < copied) {
+                snapshot = new Snapshot(built, copied);
+            }
+        }
+        return built;
+    }
+    
+    /**
+     * Finds the identifiers of all entities whose value is matched by the given text,
+     * i.e. the entities a {@link ReverseIlikeExpression} using the same parameters would select.
+     * 
+     * @param text the text to search in
+     * @param matchMode the match mode being used
+     * @return a new set of identifiers
+     * @throws NullPointerException if text or matchMode is null
+     */
+    public Set<Serializable> match(String text, PropertyMatchMode matchMode) {
+        Preconditions.checkNotNull(text, "Text");
+        Preconditions.checkNotNull(matchMode, "MatchMode");
+        return automaton().match(fold(text), matchMode);
+    }
+    
+    /**
+     * Finds the identifiers of all entities whose value occurs anywhere in the given text.
+     * 
+     * <p>
+     *   Its equivalent to calling {@link #match(String, PropertyMatchMode)}
+     *   using {@link PropertyMatchMode#ANYWHERE}
+     * </p>
+     * 
+     * @param text the text to search in
+     * @return a new set of identifiers
+     * @throws NullPointerException if text is null
+     */
+    public Set<Serializable> match(String text) {
+        return match(text, PropertyMatchMode.ANYWHERE);
+    }
+    
+    /**
+     * Creates a {@link Criterion} restricting the identifier to
+     * {@link #match(String, PropertyMatchMode)}, using {@link CustomRestrictions#in(String, java.util.Collection)}
+     * which supports any number of matches.
+     * 
+     * @param text the text to search in
+     * @param matchMode the match mode being used
+     * @return a new {@link Criterion}
+     * @throws NullPointerException if text or matchMode is null
+     * @throws IllegalStateException if this matcher has not been loaded yet
+     */
+    public Criterion restriction(String text, PropertyMatchMode matchMode) {
+        Preconditions.checkState(identifierName != null, "%s has not been loaded yet", this);
+        return CustomRestrictions.in(identifierName, match(text, matchMode));
+    }
+    
+    private boolean isResponsible(EntityPersister persister) {
+        return entityName.equals(persister.getEntityName()) || 
+            persister.getFactory().getEntityPersister(entityName).isSubclassEntityName(persister.getEntityName());
+    }
+    
+    private Object valueOf(EntityPersister persister, Object[] state) {
+        return state[persister.getEntityMetamodel().getPropertyIndex(propertyName)];
+    }
+    
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (isResponsible(event.getPersister())) {
+            put(event.getId(), valueOf(event.getPersister(), event.getState()));
+        }
+    }
+    
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (isResponsible(event.getPersister())) {
+            put(event.getId(), valueOf(event.getPersister(), event.getState()));
+        }
+    }
+    
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (isResponsible(event.getPersister())) {
+            remove(event.getId());
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "ReverseIlikeMatcher[" + entityName + "." + propertyName + "]";
+    }
+    
+    /**
+     * An automaton and the version of the values it has been built of.
+     *
+     * @author Willi Schoenborn
+     */
+    private static final class Snapshot {
+        
+        private final KeywordAutomaton<Serializable> automaton;
+        private final long version;
+        
+        public Snapshot(KeywordAutomaton<Serializable> automaton, long version) {
+            this.automaton = automaton;
+            this.version = version;
+        }
+        
+    }
+    
+}
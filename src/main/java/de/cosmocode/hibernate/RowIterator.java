@@ -0,0 +1,103 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.hibernate.ScrollableResults;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An {@link Iterator} over multi-column {@link ScrollableResults}, e.g. produced
+ * by a {@link CustomProjectionList}, which returns the same {@link ScrollableRow}
+ * for every row instead of allocating a new element.
+ * 
+ * <p>
+ *   This iterator uses {@link ScrollableResults#next()} only, so it works with
+ *   forward-only results. Note that {@link #hasNext()} moves the underlying results
+ *   to the next row, which invalidates the row returned by the previous call to {@link #next()}.
+ * </p>
+ * 
+ * <p>
+ *   Note: This iterator does not reduce allocations inside Hibernate, whose results
+ *   materialize every row as an {@code Object[]} of boxed values when moving to it.
+ *   It merely provides typed access to the current row without copying it.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ */
+public final class RowIterator implements Iterator<ScrollableRow> {
+
+    private final ScrollableResults results;
+    private final ScrollableRow row;
+    
+    private boolean advanced;
+    private boolean available;
+    
+    public RowIterator(ScrollableResults results) {
+        this.results = Preconditions.checkNotNull(results, "Results");
+        this.row = new ScrollableRow(results);
+    }
+    
+    @Override
+    public boolean hasNext() {
+        if (!advanced) {
+            available = results.next();
+            advanced = true;
+        }
+        return available;
+    }
+    
+    @Override
+    public ScrollableRow next() {
+        if (hasNext()) {
+            advanced = false;
+            return row;
+        } else {
+            throw new NoSuchElementException("No rows left in results");
+        }
+    }
+    
+    /**
+     * Copies up to columns[0].length rows into the given columnar buffer, where
+     * columns[c][r] receives the value of column c in row r.
+     * 
+     * @param columns the preallocated columnar buffer, one array per column
+     * @return the number of rows copied, 0 if there are no rows left
+     */
+    public int fill(Object[][] columns) {
+        Preconditions.checkArgument(columns.length > 0, "At least one column is required");
+        final int capacity = columns[0].length;
+        int rows = 0;
+        while (rows < capacity && hasNext()) {
+            next();
+            for (int column = 0; column < columns.length; column++) {
+                columns[column][rows] = results.get(column);
+            }
+            rows++;
+        }
+        return rows;
+    }
+    
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+    
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.hibernate.ScrollableResults;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * A forward-only {@link Iterator} over {@link ScrollableResults} which closes
+ * the underlying results as soon as they are exhausted or {@link #close()} is called.
+ * 
+ * <p>
+ *   Besides single-threaded iteration this cursor supports handing off rows in
+ *   batches using {@link #nextBatch(int)}. That method is thread-safe and allows
+ *   several worker threads to share one cursor: while one thread drains the next batch
+ *   from the database, the others process the batches they already received. 
+ *   {@link #hasNext()} and {@link #next()} must not be mixed with concurrent
+ *   calls to {@link #nextBatch(int)}.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ * @param <E> the generic element type
+ */
+public final class ScrollableResultsCursor<E> extends AbstractIterator<E> implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScrollableResultsCursor.class);
+    
+    private final ScrollableResults results;
+    
+    private boolean closed;
+    
+    public ScrollableResultsCursor(ScrollableResults results) {
+        this.results = Preconditions.checkNotNull(results, "Results");
+    }
+    
+    @Override
+    protected E computeNext() {
+        if (!closed && results.next()) {
+            @SuppressWarnings("unchecked")
+            final E result = (E) results.get(0);
+            LOG.trace("Next element is {}", result);
+            return result;
+        } else {
+            close();
+            return endOfData();
+        }
+    }
+    
+    /**
+     * Fetches up to size elements. An empty list indicates that this cursor
+     * is exhausted and has been closed.
+     * 
+     * @param size the maximum number of elements to fetch
+     * @return a list of at most size elements
+     * @throws IllegalArgumentException if size is not positive
+     */
+    public synchronized List<E> nextBatch(int size) {
+        Preconditions.checkArgument(size > 0, "Size must be positive, but was %s", size);
+        if (!hasNext()) return Collections.emptyList();
+        final List<E> batch = new ArrayList<E>(size);
+        while (batch.size() < size && hasNext()) {
+            batch.add(next());
+        }
+        LOG.trace("Handing off batch of {} elements", batch.size());
+        return batch;
+    }
+    
+    /**
+     * Closes the underlying results. Calling this method more than once has no effect.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        LOG.trace("Closing {}", results);
+        results.close();
+    }
+    
+    /**
+     * Checks whether this cursor has been closed.
+     * 
+     * @return true if the underlying results have been closed
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+    
+}
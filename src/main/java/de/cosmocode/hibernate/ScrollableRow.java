@@ -0,0 +1,150 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Date;
+
+import org.hibernate.HibernateException;
+import org.hibernate.ScrollableResults;
+
+/**
+ * A reusable view on the current row of {@link ScrollableResults}.
+ * 
+ * <p>
+ *   Instances are flyweights: they don't copy any values and always reflect the
+ *   current position of the underlying results. A row obtained from a {@link RowIterator}
+ *   is therefore only valid until the next call to {@link RowIterator#hasNext()} or
+ *   {@link RowIterator#next()}.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ */
+public final class ScrollableRow {
+
+    private final ScrollableResults results;
+    
+    ScrollableRow(ScrollableResults results) {
+        this.results = results;
+    }
+    
+    /**
+     * Returns the value of the given column.
+     * 
+     * @param column the zero-based column index
+     * @return the value, may be null
+     */
+    public Object getObject(int column) {
+        return results.get(column);
+    }
+    
+    /**
+     * Checks whether the value of the given column is null.
+     * 
+     * @param column the zero-based column index
+     * @return true if the value is null
+     */
+    public boolean isNull(int column) {
+        return results.get(column) == null;
+    }
+    
+    private Object getNonNull(int column) {
+        final Object value = results.get(column);
+        if (value == null) {
+            throw new HibernateException("Column " + column + " is null in row " + results.getRowNumber());
+        }
+        return value;
+    }
+    
+    /**
+     * Returns the value of the given numeric column as a long.
+     * 
+     * @param column the zero-based column index
+     * @return the value
+     * @throws HibernateException if the value is null
+     */
+    public long getLong(int column) {
+        return Number.class.cast(getNonNull(column)).longValue();
+    }
+    
+    /**
+     * Returns the value of the given numeric column as an int.
+     * 
+     * @param column the zero-based column index
+     * @return the value
+     * @throws HibernateException if the value is null
+     */
+    public int getInt(int column) {
+        return Number.class.cast(getNonNull(column)).intValue();
+    }
+    
+    /**
+     * Returns the value of the given numeric column as a double.
+     * 
+     * @param column the zero-based column index
+     * @return the value
+     * @throws HibernateException if the value is null
+     */
+    public double getDouble(int column) {
+        return Number.class.cast(getNonNull(column)).doubleValue();
+    }
+    
+    /**
+     * Returns the value of the given boolean column.
+     * 
+     * @param column the zero-based column index
+     * @return the value
+     * @throws HibernateException if the value is null
+     */
+    public boolean getBoolean(int column) {
+        return Boolean.class.cast(getNonNull(column)).booleanValue();
+    }
+    
+    /**
+     * Returns the value of the given column as a string.
+     * 
+     * @param column the zero-based column index
+     * @return the string representation of the value, or null
+     */
+    public String getString(int column) {
+        final Object value = results.get(column);
+        return value == null ? null : value.toString();
+    }
+    
+    /**
+     * Returns the value of the given temporal column.
+     * 
+     * @param column the zero-based column index
+     * @return the value, may be null
+     */
+    public Date getDate(int column) {
+        return Date.class.cast(results.get(column));
+    }
+    
+    /**
+     * Copies the first values.length columns into the given array.
+     * 
+     * @param values the target array
+     * @return the given array
+     */
+    public Object[] copyTo(Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = results.get(i);
+        }
+        return values;
+    }
+    
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Iterator;
+
+import org.hibernate.Criteria;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.SessionFactoryImplementor;
+
+/**
+ * Utility methods for opening {@link ScrollableResults} in a streaming-friendly way.
+ * 
+ * <p>
+ *   All results opened by this class use {@link ScrollMode#FORWARD_ONLY} and
+ *   a driver-specific fetch size. MySQL's driver only streams rows when the
+ *   fetch size is set to {@link Integer#MIN_VALUE}, every other driver
+ *   receives {@link #DEFAULT_FETCH_SIZE}. Note that PostgreSQL only honors
+ *   the fetch size if auto-commit is disabled.
+ * </p>
+ * 
+ * @see ForwardOnlyScrollableResultsIterator
+ *
+ * @author Willi Schoenborn
+ */
+public final class Scrolling {
+
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    
+    private static final int MYSQL_STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+    
+    private Scrolling() {
+        
+    }
+    
+    /**
+     * Returns the fetch size which enables row streaming for the given dialect.
+     * 
+     * @param dialect the dialect of the underlying database
+     * @return the fetch size which should be used for forward-only results
+     */
+    public static int fetchSize(Dialect dialect) {
+        return dialect instanceof MySQLDialect ? MYSQL_STREAMING_FETCH_SIZE : DEFAULT_FETCH_SIZE;
+    }
+    
+    /**
+     * Scrolls the given criteria using {@link ScrollMode#FORWARD_ONLY} and
+     * the streaming fetch size of the given dialect.
+     * 
+     * @param criteria the criteria to scroll
+     * @param dialect the dialect of the underlying database
+     * @return forward-only results
+     */
+    public static ScrollableResults forwardOnly(Criteria criteria, Dialect dialect) {
+        return criteria.setFetchSize(fetchSize(dialect)).scroll(ScrollMode.FORWARD_ONLY);
+    }
+    
+    /**
+     * Scrolls the given criteria using {@link ScrollMode#FORWARD_ONLY} and
+     * the streaming fetch size of the session's dialect.
+     * 
+     * @param session the session the criteria has been created with
+     * @param criteria the criteria to scroll
+     * @return forward-only results
+     */
+    public static ScrollableResults forwardOnly(Session session, Criteria criteria) {
+        return forwardOnly(criteria, dialectOf(session));
+    }
+    
+    /**
+     * Scrolls the given query using {@link ScrollMode#FORWARD_ONLY} and
+     * the streaming fetch size of the given dialect.
+     * 
+     * @param query the query to scroll
+     * @param dialect the dialect of the underlying database
+     * @return forward-only results
+     */
+    public static ScrollableResults forwardOnly(Query query, Dialect dialect) {
+        return query.setFetchSize(fetchSize(dialect)).scroll(ScrollMode.FORWARD_ONLY);
+    }
+    
+    /**
+     * Scrolls the given criteria using {@link #forwardOnly(Session, Criteria)} and
+     * adapts the results into an {@link Iterator}.
+     * 
+     * @param <E> the generic element type
+     * @param session the session the criteria has been created with
+     * @param criteria the criteria to scroll
+     * @return an iterator over the first column of every row
+     */
+    public static <E> Iterator<E> iterate(Session session, Criteria criteria) {
+        return new ForwardOnlyScrollableResultsIterator<E>(forwardOnly(session, criteria));
+    }
+    
+    /**
+     * Scrolls the given criteria using {@link #forwardOnly(Session, Criteria)} and
+     * adapts the results into a {@link ScrollableResultsCursor} which closes them
+     * once exhausted.
+     * 
+     * @param <E> the generic element type
+     * @param session the session the criteria has been created with
+     * @param criteria the criteria to scroll
+     * @return a cursor over the first column of every row
+     */
+    public static <E> ScrollableResultsCursor<E> cursor(Session session, Criteria criteria) {
+        return new ScrollableResultsCursor<E>(forwardOnly(session, criteria));
+    }
+    
+    /**
+     * Looks up the dialect of the given session.
+     * 
+     * @param session the session
+     * @return the dialect of the session's factory
+     */
+    public static Dialect dialectOf(Session session) {
+        return SessionFactoryImplementor.class.cast(session.getSessionFactory()).getDialect();
+    }
+    
+}
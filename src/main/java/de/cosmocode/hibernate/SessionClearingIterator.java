@@ -0,0 +1,124 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Iterator;
+
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A decorator for iterators over results of a {@link Session}, e.g. 
+ * {@link ScrollableResultsIterator}s, which clears the session every
+ * n elements to prevent the persistence context from growing without limit.
+ * 
+ * <p>
+ *   The session is being cleared right before the first element of the next batch
+ *   is fetched, so the element returned last can still be used safely until the next call
+ *   to {@link #hasNext()} or {@link #next()}. Clearing happens before the decorated iterator
+ *   is asked for the next element, because lookahead iterators, e.g. those based on
+ *   {@link com.google.common.collect.AbstractIterator}, already load it in their
+ *   {@link #hasNext()}. The last, possibly incomplete, batch is being cleared as soon as
+ *   {@link #hasNext()} returns false.
+ * </p>
+ *
+ * @author Willi Schoenborn
+ * @param <E> the generic element type
+ */
+public final class SessionClearingIterator<E> implements Iterator<E> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SessionClearingIterator.class);
+    
+    private static final BatchListener NO_LISTENER = new BatchListener() {
+        
+        @Override
+        public void onBatch(Session session, long processed) {
+            
+        }
+        
+    };
+    
+    private final Iterator<E> iterator;
+    private final Session session;
+    private final int batchSize;
+    private final boolean flush;
+    private final BatchListener listener;
+    
+    private long processed;
+    private int pending;
+    
+    public SessionClearingIterator(Iterator<E> iterator, Session session, int batchSize) {
+        this(iterator, session, batchSize, false);
+    }
+    
+    public SessionClearingIterator(Iterator<E> iterator, Session session, int batchSize, boolean flush) {
+        this(iterator, session, batchSize, flush, NO_LISTENER);
+    }
+    
+    public SessionClearingIterator(Iterator<E> iterator, Session session, int batchSize, boolean flush, 
+        BatchListener listener) {
+        this.iterator = Preconditions.checkNotNull(iterator, "Iterator");
+        this.session = Preconditions.checkNotNull(session, "Session");
+        Preconditions.checkArgument(batchSize > 0, "BatchSize must be positive, but was %s", batchSize);
+        this.batchSize = batchSize;
+        this.flush = flush;
+        this.listener = Preconditions.checkNotNull(listener, "Listener");
+    }
+    
+    private void clear() {
+        if (flush) {
+            LOG.trace("Flushing session after {} elements", processed);
+            session.flush();
+        }
+        listener.onBatch(session, processed);
+        LOG.trace("Clearing session after {} elements", processed);
+        session.clear();
+        pending = 0;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        if (pending == batchSize) {
+            clear();
+        }
+        final boolean hasNext = iterator.hasNext();
+        if (!hasNext && pending > 0) {
+            clear();
+        }
+        return hasNext;
+    }
+    
+    @Override
+    public E next() {
+        if (pending == batchSize) {
+            clear();
+        }
+        final E next = iterator.next();
+        processed++;
+        pending++;
+        return next;
+    }
+    
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+    
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Arrays;
+
+import org.easymock.EasyMock;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link BatchWriter} using mocked sessions and transactions.
+ *
+ * @author Willi Schoenborn
+ */
+public class BatchWriterTest {
+
+    /**
+     * Tests flushing, clearing and committing in session mode.
+     */
+    @Test
+    public void session() {
+        final Session session = EasyMock.createMock(Session.class);
+        final Transaction transaction = EasyMock.createMock(Transaction.class);
+        for (int i = 0; i < 5; i++) {
+            EasyMock.expect(session.save(Integer.valueOf(i))).andReturn(Long.valueOf(i));
+        }
+        // batches after 2, 4 and 5 (finish) entities
+        session.flush();
+        EasyMock.expectLastCall().times(3);
+        session.clear();
+        EasyMock.expectLastCall().times(3);
+        // commit after the second batch
+        EasyMock.expect(session.getTransaction()).andReturn(transaction);
+        EasyMock.expect(transaction.isActive()).andReturn(true);
+        transaction.commit();
+        EasyMock.expect(session.beginTransaction()).andReturn(transaction);
+        EasyMock.replay(session, transaction);
+        
+        final BatchWriter writer = BatchWriter.of(session, 2, 2);
+        writer.saveAll(Arrays.asList(0, 1, 2, 3, 4));
+        writer.finish();
+        
+        EasyMock.verify(session, transaction);
+        Assert.assertEquals(5, writer.getCount());
+        Assert.assertEquals(3, writer.getBatches());
+        Assert.assertEquals(1, writer.getCommits());
+    }
+    
+    /**
+     * Tests that reaching the commit interval without an active transaction is not counted as commit.
+     */
+    @Test
+    public void inactiveTransaction() {
+        final Session session = EasyMock.createNiceMock(Session.class);
+        final Transaction transaction = EasyMock.createMock(Transaction.class);
+        EasyMock.expect(session.getTransaction()).andReturn(transaction).times(2);
+        EasyMock.expect(transaction.isActive()).andReturn(false).times(2);
+        EasyMock.replay(session, transaction);
+        
+        final BatchWriter writer = BatchWriter.of(session, 1, 1);
+        writer.updateAll(Arrays.asList("a", "b"));
+        writer.finish();
+        
+        EasyMock.verify(transaction);
+        Assert.assertEquals(2, writer.getCount());
+        Assert.assertEquals(2, writer.getBatches());
+        Assert.assertEquals(0, writer.getCommits());
+    }
+    
+    /**
+     * Tests {@link BatchWriter#updateAll(Iterable)} in session mode.
+     */
+    @Test
+    public void updateAll() {
+        final Session session = EasyMock.createMock(Session.class);
+        session.update("a");
+        session.update("b");
+        session.update("c");
+        session.flush();
+        EasyMock.expectLastCall().times(2);
+        session.clear();
+        EasyMock.expectLastCall().times(2);
+        EasyMock.replay(session);
+        
+        final BatchWriter writer = BatchWriter.of(session, 2, 0);
+        writer.updateAll(Arrays.asList("a", "b", "c"));
+        writer.finish();
+        
+        EasyMock.verify(session);
+        Assert.assertEquals(3, writer.getCount());
+        Assert.assertEquals(0, writer.getCommits());
+    }
+    
+    /**
+     * Tests inserting and committing using a stateless session.
+     */
+    @Test
+    public void stateless() {
+        final StatelessSession session = EasyMock.createMock(StatelessSession.class);
+        final Transaction transaction = EasyMock.createMock(Transaction.class);
+        EasyMock.expect(session.insert("a")).andReturn(Long.valueOf(1L));
+        EasyMock.expect(session.insert("b")).andReturn(Long.valueOf(2L));
+        session.update("c");
+        // commit after the second batch
+        EasyMock.expect(session.getTransaction()).andReturn(transaction);
+        EasyMock.expect(transaction.isActive()).andReturn(true);
+        transaction.commit();
+        EasyMock.expect(session.beginTransaction()).andReturn(transaction);
+        EasyMock.replay(session, transaction);
+        
+        final BatchWriter writer = BatchWriter.stateless(session, 1, 2);
+        writer.saveAll(Arrays.asList("a", "b"));
+        writer.update("c");
+        writer.finish();
+        
+        EasyMock.verify(session, transaction);
+        Assert.assertEquals(3, writer.getBatches());
+        Assert.assertEquals(1, writer.getCommits());
+    }
+    
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests {@link BitAggregateProjection}s against {@link EmbeddedDatabase}s,
+ * which both emulate the aggregates.
+ *
+ * @author Willi Schoenborn
+ */
+@RunWith(Parameterized.class)
+public class BitAggregateDatabaseTest {
+
+    private final EmbeddedDatabase database;
+    
+    private SessionFactory factory;
+    
+    public BitAggregateDatabaseTest(EmbeddedDatabase database) {
+        this.database = database;
+    }
+    
+    /**
+     * Provides the databases.
+     * 
+     * @return all {@link EmbeddedDatabase}s
+     */
+    @Parameters
+    public static Collection<Object[]> parameters() {
+        return EmbeddedDatabase.parameters();
+    }
+    
+    /**
+     * Creates and fills the database.
+     */
+    @Before
+    public void before() {
+        factory = database.open();
+        final Item apple = new Item("a", "Apple", ItemFlag.RED, ItemFlag.BLUE);
+        apple.setBits(Long.MIN_VALUE | 1L);
+        final Item apricot = new Item("a", "apricot", ItemFlag.RED);
+        apricot.setBits(2L);
+        final Item banana = new Item("b", "Banana", ItemFlag.GREEN, ItemFlag.BLUE);
+        banana.setBits(Long.MIN_VALUE | 2L);
+        final Item blueberry = new Item("b", "blueberry", ItemFlag.BLUE);
+        blueberry.setBits(Long.MIN_VALUE | 6L);
+        EmbeddedDatabase.save(factory, apple, apricot, banana, blueberry);
+    }
+    
+    /**
+     * Drops the database.
+     */
+    @After
+    public void after() {
+        factory.close();
+    }
+    
+    private Object aggregate(Projection projection, String owner) {
+        final Session session = factory.openSession();
+        try {
+            final Criteria criteria = session.createCriteria(Item.class).setProjection(projection);
+            if (owner != null) criteria.add(Restrictions.eq("owner", owner));
+            return criteria.uniqueResult();
+        } finally {
+            session.close();
+        }
+    }
+    
+    /**
+     * Tests aggregating enum sets.
+     */
+    @Test
+    public void enumSets() {
+        Assert.assertEquals(EnumSet.allOf(ItemFlag.class), 
+            aggregate(BitwiseProjections.bitOr("flags", ItemFlag.class), null));
+        Assert.assertEquals(EnumSet.of(ItemFlag.BLUE), 
+            aggregate(BitwiseProjections.bitAnd("flags", ItemFlag.class), "b"));
+        Assert.assertEquals(EnumSet.of(ItemFlag.RED), 
+            aggregate(BitwiseProjections.bitAnd("flags", ItemFlag.class), "a"));
+    }
+    
+    /**
+     * Tests aggregating all 64 bits, including the sign bit.
+     */
+    @Test
+    public void highestBit() {
+        Assert.assertEquals(Long.valueOf(Long.MIN_VALUE | 7L), aggregate(BitwiseProjections.bitOr("bits"), null));
+        Assert.assertEquals(Long.valueOf(Long.MIN_VALUE | 2L), aggregate(BitwiseProjections.bitAnd("bits"), "b"));
+        Assert.assertEquals(Long.valueOf(0L), aggregate(BitwiseProjections.bitAnd("bits"), "a"));
+    }
+    
+    /**
+     * Tests aggregating per group.
+     */
+    @Test
+    public void grouped() {
+        final Session session = factory.openSession();
+        try {
+            final List<?> rows = session.createCriteria(Item.class).
+                setProjection(Projections.projectionList().
+                    add(Projections.groupProperty("owner")).
+                    add(BitwiseProjections.bitOr("flags", ItemFlag.class)).
+                    add(BitwiseProjections.bitOr("bits"))).
+                addOrder(Order.asc("owner")).
+                list();
+            Assert.assertEquals(2, rows.size());
+            Assert.assertArrayEquals(new Object[] {
+                "a", EnumSet.of(ItemFlag.RED, ItemFlag.BLUE), Long.valueOf(Long.MIN_VALUE | 3L)
+            }, (Object[]) rows.get(0));
+            Assert.assertArrayEquals(new Object[] {
+                "b", EnumSet.of(ItemFlag.GREEN, ItemFlag.BLUE), Long.valueOf(Long.MIN_VALUE | 6L)
+            }, (Object[]) rows.get(1));
+        } finally {
+            session.close();
+        }
+    }
+    
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumSet;
+
+import org.easymock.EasyMock;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Projection;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.type.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link BitAggregateProjection}.
+ *
+ * @author Willi Schoenborn
+ */
+public class BitAggregateProjectionTest {
+
+    /**
+     * Enum used for testing.
+     *
+     * @author Willi Schoenborn
+     */
+    private static enum Color {
+        
+        RED, GREEN, BLUE
+        
+    }
+    
+    private CriteriaQuery query(Dialect dialect) {
+        return MockCriteriaQuery.of(dialect, "flags", "this_.flags");
+    }
+    
+    private Object read(Projection projection, BigDecimal value) throws SQLException {
+        final ResultSet resultSet = EasyMock.createMock(ResultSet.class);
+        EasyMock.expect(resultSet.getBigDecimal("y0_")).andReturn(value);
+        EasyMock.replay(resultSet);
+        final Type type = projection.getTypes(null, query(new MySQLDialect()))[0];
+        final Object result = type.nullSafeGet(resultSet, "y0_", null, null);
+        EasyMock.verify(resultSet);
+        return result;
+    }
+    
+    /**
+     * Tests rendering of native aggregates on MySQL.
+     */
+    @Test
+    public void mysql() {
+        Assert.assertEquals("bit_or(this_.flags) as y0_", 
+            BitwiseProjections.bitOr("flags", Color.class).toSqlString(null, 0, query(new MySQLDialect())));
+        Assert.assertEquals("bit_and(this_.flags) as y1_", 
+            BitwiseProjections.bitAnd("flags").toSqlString(null, 1, query(new MySQLDialect())));
+    }
+    
+    /**
+     * Tests that the emulation only aggregates the constants of the given enum type.
+     */
+    @Test
+    public void width() {
+        final String enumSql = 
+            BitwiseProjections.bitOr("flags", Color.class).toSqlString(null, 0, query(new H2Dialect()));
+        final String longSql = 
+            BitwiseProjections.bitOr("flags").toSqlString(null, 0, query(new H2Dialect()));
+        Assert.assertTrue(enumSql.contains("bitand(this_.flags, 4)"));
+        Assert.assertFalse(enumSql.contains("bitand(this_.flags, 8)"));
+        Assert.assertTrue(longSql.contains("bitand(this_.flags, " + BitwiseDialect.literal(Long.MIN_VALUE) + ")"));
+    }
+    
+    /**
+     * Tests that unsigned 64-bit results are narrowed to long.
+     * 
+     * @throws SQLException should not happen
+     */
+    @Test
+    public void unsigned() throws SQLException {
+        Assert.assertEquals(Long.valueOf(-1L), 
+            read(BitwiseProjections.bitAnd("flags"), new BigDecimal("18446744073709551615")));
+        Assert.assertEquals(Long.valueOf(Long.MIN_VALUE), 
+            read(BitwiseProjections.bitOr("flags"), new BigDecimal("9223372036854775808")));
+        Assert.assertEquals(Long.valueOf(6L), read(BitwiseProjections.bitOr("flags"), new BigDecimal(6)));
+        Assert.assertNull(read(BitwiseProjections.bitOr("flags"), null));
+    }
+    
+    /**
+     * Tests that results are decoded into enum sets if the enum type is given.
+     * 
+     * @throws SQLException should not happen
+     */
+    @Test
+    public void enumSet() throws SQLException {
+        Assert.assertEquals(EnumSet.of(Color.RED, Color.BLUE), 
+            read(BitwiseProjections.bitOr("flags", Color.class), new BigDecimal(5)));
+        Assert.assertEquals(EnumSet.allOf(Color.class), 
+            read(BitwiseProjections.bitAnd("flags", Color.class), new BigDecimal("18446744073709551615")));
+    }
+    
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests {@link BitwiseRestrictions} and {@link EnumSetRestriction}s against {@link EmbeddedDatabase}s.
+ *
+ * @author Willi Schoenborn
+ */
+@RunWith(Parameterized.class)
+public class BitwiseRestrictionsDatabaseTest {
+
+    private final EmbeddedDatabase database;
+    
+    private SessionFactory factory;
+    
+    public BitwiseRestrictionsDatabaseTest(EmbeddedDatabase database) {
+        this.database = database;
+    }
+    
+    /**
+     * Provides the databases.
+     * 
+     * @return all {@link EmbeddedDatabase}s
+     */
+    @Parameters
+    public static Collection<Object[]> parameters() {
+        return EmbeddedDatabase.parameters();
+    }
+    
+    /**
+     * Creates and fills the database.
+     */
+    @Before
+    public void before() {
+        factory = database.open();
+        final Item apple = new Item("a", "Apple", ItemFlag.RED, ItemFlag.BLUE);
+        apple.setBits(Long.MIN_VALUE | 1L);
+        final Item apricot = new Item("a", "apricot", ItemFlag.RED);
+        apricot.setBits(2L);
+        final Item banana = new Item("b", "Banana", ItemFlag.GREEN, ItemFlag.BLUE);
+        final Item blueberry = new Item("b", "blueberry");
+        blueberry.setBits(Long.MIN_VALUE);
+        EmbeddedDatabase.save(factory, apple, apricot, banana, blueberry);
+    }
+    
+    /**
+     * Drops the database.
+     */
+    @After
+    public void after() {
+        factory.close();
+    }
+    
+    private List<?> ids(Criterion criterion) {
+        final Session session = factory.openSession();
+        try {
+            return session.createCriteria(Item.class).
+                add(criterion).
+                setProjection(Projections.id()).
+                addOrder(Order.asc("id")).
+                list();
+        } finally {
+            session.close();
+        }
+    }
+    
+    /**
+     * Tests the bitwise restrictions on an enum set property.
+     */
+    @Test
+    public void bitwise() {
+        Assert.assertEquals(Arrays.asList(1L, 3L), ids(BitwiseRestrictions.containsAny("flags", 4L)));
+        Assert.assertEquals(Arrays.asList(1L), ids(BitwiseRestrictions.containsAll("flags", 5L)));
+        Assert.assertEquals(Arrays.asList(3L, 4L), ids(BitwiseRestrictions.none("flags", 1L)));
+        Assert.assertEquals(Arrays.asList(2L), ids(BitwiseRestrictions.exact("flags", 1L)));
+    }
+    
+    /**
+     * Tests the enum set restrictions of {@link CustomRestrictions}.
+     */
+    @Test
+    public void enumSets() {
+        Assert.assertEquals(Arrays.asList(1L, 3L), ids(CustomRestrictions.has("flags", ItemFlag.BLUE)));
+        Assert.assertEquals(Arrays.asList(4L), 
+            ids(CustomRestrictions.none("flags", EnumSet.of(ItemFlag.RED, ItemFlag.GREEN))));
+        Assert.assertEquals(Arrays.asList(3L, 4L), ids(CustomRestrictions.notHas("flags", ItemFlag.RED)));
+        Assert.assertEquals(Arrays.asList(1L), 
+            ids(CustomRestrictions.hasAll("flags", EnumSet.of(ItemFlag.RED, ItemFlag.BLUE))));
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L), 
+            ids(CustomRestrictions.all("flags", EnumSet.of(ItemFlag.RED, ItemFlag.BLUE))));
+    }
+    
+    /**
+     * Tests restrictions on the highest bit, which makes the column value negative.
+     */
+    @Test
+    public void highestBit() {
+        Assert.assertEquals(Arrays.asList(1L, 4L), ids(BitwiseRestrictions.containsAny("bits", Long.MIN_VALUE)));
+        Assert.assertEquals(Arrays.asList(1L), ids(BitwiseRestrictions.containsAll("bits", Long.MIN_VALUE | 1L)));
+        Assert.assertEquals(Arrays.asList(2L, 3L), ids(BitwiseRestrictions.none("bits", Long.MIN_VALUE)));
+    }
+    
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.HSQLDialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.TypedValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link BitwiseRestrictions} using different dialects.
+ *
+ * @author Willi Schoenborn
+ */
+public class BitwiseRestrictionsTest {
+
+    private CriteriaQuery query(Dialect dialect) {
+        return MockCriteriaQuery.of(dialect, "flags", "this_.flags");
+    }
+    
+    /**
+     * Tests rendering using the {@code &} operator.
+     */
+    @Test
+    public void mysql() {
+        final CriteriaQuery query = query(new MySQLDialect());
+        Assert.assertEquals("((this_.flags & ?) <> 0)", 
+            BitwiseRestrictions.containsAny("flags", 6L).toSqlString(null, query));
+    }
+    
+    /**
+     * Tests rendering using the {@code bitand} function on H2.
+     */
+    @Test
+    public void h2() {
+        final CriteriaQuery query = query(new H2Dialect());
+        final Criterion all = BitwiseRestrictions.containsAll("flags", 6L);
+        Assert.assertEquals("(bitand(this_.flags, ?) = ?)", all.toSqlString(null, query));
+        
+        final TypedValue[] values = all.getTypedValues(null, query);
+        Assert.assertEquals(2, values.length);
+        Assert.assertEquals(Long.valueOf(6L), values[0].getValue());
+        Assert.assertEquals(Long.valueOf(6L), values[1].getValue());
+    }
+    
+    /**
+     * Tests rendering using the {@code bitand} function on HSQLDB.
+     */
+    @Test
+    public void hsql() {
+        final CriteriaQuery query = query(new HSQLDialect());
+        Assert.assertEquals("(bitand(this_.flags, ?) = 0)", 
+            BitwiseRestrictions.none("flags", 6L).toSqlString(null, query));
+        Assert.assertEquals("this_.flags = ?", 
+            BitwiseRestrictions.exact("flags", 6L).toSqlString(null, query));
+    }
+    
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Collection;
+import java.util.EnumSet;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests {@link BitwiseUpdates} against {@link EmbeddedDatabase}s.
+ *
+ * @author Willi Schoenborn
+ */
+@RunWith(Parameterized.class)
+public class BitwiseUpdatesDatabaseTest {
+
+    private final EmbeddedDatabase database;
+    
+    private SessionFactory factory;
+    
+    public BitwiseUpdatesDatabaseTest(EmbeddedDatabase database) {
+        this.database = database;
+    }
+    
+    /**
+     * Provides the databases.
+     * 
+     * @return all {@link EmbeddedDatabase}s
+     */
+    @Parameters
+    public static Collection<Object[]> parameters() {
+        return EmbeddedDatabase.parameters();
+    }
+    
+    /**
+     * Creates and fills the database.
+     */
+    @Before
+    public void before() {
+        factory = database.open();
+        EmbeddedDatabase.save(factory,
+            new Item("a", "Apple", ItemFlag.RED, ItemFlag.BLUE),
+            new Item("a", "apricot", ItemFlag.RED),
+            new Item("b", "Banana", ItemFlag.GREEN, ItemFlag.BLUE),
+            new Item("b", "blueberry"));
+    }
+    
+    /**
+     * Drops the database.
+     */
+    @After
+    public void after() {
+        factory.close();
+    }
+    
+    private Item get(long id) {
+        final Session session = factory.openSession();
+        try {
+            return (Item) session.get(Item.class, id);
+        } finally {
+            session.close();
+        }
+    }
+    
+    /**
+     * Tests setting and clearing flags of the matching rows only.
+     */
+    @Test
+    public void setAndClear() {
+        final Session session = factory.openSession();
+        try {
+            final Transaction transaction = session.beginTransaction();
+            final DetachedCriteria owner = DetachedCriteria.forClass(Item.class).add(Restrictions.eq("owner", "a"));
+            Assert.assertEquals(2, BitwiseUpdates.set(session, owner, "flags", EnumSet.of(ItemFlag.GREEN)));
+            Assert.assertEquals(4, BitwiseUpdates.clear(session, 
+                DetachedCriteria.forClass(Item.class), "flags", EnumSet.of(ItemFlag.RED)));
+            transaction.commit();
+        } finally {
+            session.close();
+        }
+        
+        Assert.assertEquals(EnumSet.of(ItemFlag.GREEN, ItemFlag.BLUE), get(1L).getFlags());
+        Assert.assertEquals(EnumSet.of(ItemFlag.GREEN), get(2L).getFlags());
+        Assert.assertEquals(EnumSet.of(ItemFlag.GREEN, ItemFlag.BLUE), get(3L).getFlags());
+        Assert.assertEquals(EnumSet.noneOf(ItemFlag.class), get(4L).getFlags());
+    }
+    
+    /**
+     * Tests that ordered criteria can be used and the highest bit can be set.
+     */
+    @Test
+    public void orderedHighestBit() {
+        final Session session = factory.openSession();
+        try {
+            final Transaction transaction = session.beginTransaction();
+            final DetachedCriteria criteria = DetachedCriteria.forClass(Item.class).
+                add(Restrictions.like("name", "b%")).
+                addOrder(Order.desc("name"));
+            Assert.assertEquals(1, BitwiseUpdates.set(session, criteria, "bits", Long.MIN_VALUE | 1L));
+            Assert.assertEquals(1, BitwiseUpdates.clear(session, criteria, "bits", 1L));
+            transaction.commit();
+        } finally {
+            session.close();
+        }
+        
+        Assert.assertEquals(0L, get(3L).getBits());
+        Assert.assertEquals(Long.MIN_VALUE, get(4L).getBits());
+    }
+    
+    /**
+     * Tests that criteria limiting their results are rejected, because
+     * the update would ignore the limit.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void maxResults() {
+        final Session session = factory.openSession();
+        try {
+            final DetachedCriteria criteria = DetachedCriteria.forClass(Item.class);
+            criteria.getExecutableCriteria(session).setMaxResults(1);
+            BitwiseUpdates.set(session, criteria, "bits", 1L);
+        } finally {
+            session.close();
+        }
+    }
+    
+    /**
+     * Tests that criteria skipping results are rejected, because
+     * the update would ignore the offset.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void firstResult() {
+        final Session session = factory.openSession();
+        try {
+            final DetachedCriteria criteria = DetachedCriteria.forClass(Item.class);
+            criteria.getExecutableCriteria(session).setFirstResult(1);
+            BitwiseUpdates.clear(session, criteria, "bits", 1L);
+        } finally {
+            session.close();
+        }
+    }
+    
+    /**
+     * Tests that updated entities are evicted from the second level cache.
+     */
+    @Test
+    public void evict() {
+        Assert.assertEquals(EnumSet.of(ItemFlag.RED), get(2L).getFlags());
+        Assert.assertTrue(factory.getCache().containsEntity(Item.class, 2L));
+        
+        final Session session = factory.openSession();
+        try {
+            final Transaction transaction = session.beginTransaction();
+            BitwiseUpdates.set(session, DetachedCriteria.forClass(Item.class), "flags", EnumSet.of(ItemFlag.BLUE));
+            transaction.commit();
+        } finally {
+            session.close();
+        }
+        
+        Assert.assertFalse(factory.getCache().containsEntity(Item.class, 2L));
+        Assert.assertEquals(EnumSet.of(ItemFlag.RED, ItemFlag.BLUE), get(2L).getFlags());
+    }
+    
+}
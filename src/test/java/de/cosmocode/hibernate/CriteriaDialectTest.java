@@ -0,0 +1,81 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import org.easymock.EasyMock;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.dialect.SQLServerDialect;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link CriteriaDialect}.
+ *
+ * @author Willi Schoenborn
+ */
+public class CriteriaDialectTest {
+
+    private SessionFactoryImplementor factory() {
+        final SessionFactoryImplementor factory = EasyMock.createMock(SessionFactoryImplementor.class);
+        EasyMock.expect(factory.getDialect()).andReturn(new MySQLDialect()).once();
+        EasyMock.replay(factory);
+        return factory;
+    }
+    
+    /**
+     * Tests that the dialect is resolved only once per factory.
+     */
+    @Test
+    public void of() {
+        final SessionFactoryImplementor factory = factory();
+        final CriteriaDialect dialect = CriteriaDialect.of(factory);
+        Assert.assertSame(dialect, CriteriaDialect.of(factory));
+        Assert.assertSame(dialect.getBitwise(), BitwiseDialect.of(factory));
+        Assert.assertEquals(65535, dialect.getMaxParameters());
+        EasyMock.verify(factory);
+    }
+    
+    /**
+     * Tests the per-statement parameter limits.
+     */
+    @Test
+    public void maxParameters() {
+        Assert.assertEquals(32767, 
+            CriteriaDialect.of(MockCriteriaQuery.of(new PostgreSQLDialect(), "id").getFactory()).getMaxParameters());
+        Assert.assertEquals(2100, 
+            CriteriaDialect.of(MockCriteriaQuery.of(new SQLServerDialect(), "id").getFactory()).getMaxParameters());
+    }
+    
+    /**
+     * Tests caching fragments using {@link CriteriaDialect.FragmentKey}s.
+     */
+    @Test
+    public void fragments() {
+        final CriteriaDialect dialect = CriteriaDialect.of(factory());
+        final CriteriaDialect.FragmentKey key = new CriteriaDialect.FragmentKey(Object.class, "this_.id", "=", 1L);
+        Assert.assertNull(dialect.getFragment(key));
+        Assert.assertEquals("this_.id = 1", dialect.putFragment(key, "this_.id = 1"));
+        Assert.assertEquals("this_.id = 1", dialect.putFragment(key, "other"));
+        Assert.assertEquals("this_.id = 1", 
+            dialect.getFragment(new CriteriaDialect.FragmentKey(Object.class, "this_.id", "=", 1L)));
+        Assert.assertNull(dialect.getFragment(new CriteriaDialect.FragmentKey(Object.class, "this_.id", "=", 2L)));
+        Assert.assertNull(dialect.getFragment(new CriteriaDialect.FragmentKey(Object.class, "this_.id", null, 1L)));
+    }
+    
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests that criteria optimized by the {@link CriterionOptimizer} select the same rows
+ * as the original ones on {@link EmbeddedDatabase}s.
+ *
+ * @author Willi Schoenborn
+ */
+@RunWith(Parameterized.class)
+public class CriterionOptimizerDatabaseTest {
+
+    private final EmbeddedDatabase database;
+    
+    private SessionFactory factory;
+    
+    public CriterionOptimizerDatabaseTest(EmbeddedDatabase database) {
+        this.database = database;
+    }
+    
+    /**
+     * Provides the databases.
+     * 
+     * @return all {@link EmbeddedDatabase}s
+     */
+    @Parameters
+    public static Collection<Object[]> parameters() {
+        return EmbeddedDatabase.parameters();
+    }
+    
+    /**
+     * Creates and fills the database.
+     */
+    @Before
+    public void before() {
+        factory = database.open();
+        EmbeddedDatabase.save(factory, 
+            new Item("a", "Apple"),
+            new Item("a", "apricot"),
+            new Item("b", "Banana"),
+            new Item("c", "cherry"),
+            new Item(null, "date"),
+            new Item("d", null)
+        );
+    }
+    
+    /**
+     * Drops the database.
+     */
+    @After
+    public void after() {
+        factory.close();
+    }
+    
+    private List<?> ids(Criterion criterion) {
+        final Session session = factory.openSession();
+        try {
+            return session.createCriteria(Item.class).
+                add(criterion).
+                setProjection(Projections.id()).
+                addOrder(Order.asc("id")).
+                list();
+        } finally {
+            session.close();
+        }
+    }
+    
+    private void assertSameRows(Criterion criterion, int expected) {
+        final Criterion optimized = CriterionOptimizer.optimize(criterion);
+        Assert.assertNotSame(criterion, optimized);
+        final List<?> rows = ids(criterion);
+        Assert.assertEquals(expected, rows.size());
+        Assert.assertEquals(rows, ids(optimized));
+    }
+    
+    /**
+     * Tests flattened and deduplicated junctions.
+     */
+    @Test
+    public void flatten() {
+        assertSameRows(Restrictions.and(
+            Restrictions.and(Restrictions.eq("owner", "a"), Restrictions.like("name", "A%")),
+            CustomRestrictions.conjunction(Restrictions.eq("owner", "a"), 
+                Restrictions.isNotNull("name"), Restrictions.isNotNull("name"))
+        ), 1);
+    }
+    
+    /**
+     * Tests merged equalities and in expressions, including null values.
+     */
+    @Test
+    public void mergeIn() {
+        assertSameRows(CustomRestrictions.disjunction(
+            Restrictions.eq("owner", "a"),
+            Restrictions.or(Restrictions.isNull("owner"), Restrictions.eq("owner", "b")),
+            Restrictions.in("owner", Arrays.asList("b", "x")),
+            Restrictions.eq("name", "cherry")
+        ), 5);
+        assertSameRows(Restrictions.not(Restrictions.or(
+            Restrictions.eq("owner", "a"), Restrictions.eq("owner", "b")
+        )), 2);
+    }
+    
+    /**
+     * Tests folded constants.
+     */
+    @Test
+    public void constants() {
+        final Criterion a = Restrictions.eq("owner", "a");
+        assertSameRows(Restrictions.and(a, Restrictions.sqlRestriction("1=0")), 0);
+        assertSameRows(Restrictions.or(a, Restrictions.sqlRestriction("1=1")), 6);
+        assertSameRows(Restrictions.and(a, Restrictions.conjunction()), 2);
+        assertSameRows(Restrictions.or(a, Restrictions.sqlRestriction("1=0")), 2);
+        assertSameRows(Restrictions.disjunction(), 6);
+        assertSameRows(Restrictions.not(Restrictions.conjunction()), 0);
+    }
+    
+    /**
+     * Tests removed double negations, which are not affected by null values.
+     */
+    @Test
+    public void negation() {
+        // HSQLDB does not accept "not not", hence the inner negation is parenthesized
+        assertSameRows(Restrictions.not(Restrictions.conjunction().
+            add(Restrictions.not(Restrictions.eq("owner", "a")))), 2);
+        assertSameRows(Restrictions.not(Restrictions.conjunction().
+            add(Restrictions.not(Restrictions.ne("owner", "a")))), 3);
+    }
+    
+}
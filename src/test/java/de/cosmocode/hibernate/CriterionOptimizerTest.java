@@ -0,0 +1,113 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.cosmocode.hibernate;
+
+import java.util.Arrays;
+
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.type.IntegerType;
+import org.hibernate.type.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link CriterionOptimizer}.
+ *
+ * @author Willi Schoenborn
+ */
+public class CriterionOptimizerTest {
+
+    private static final Type INTEGER = new IntegerType();
+
+    private static String optimize(Criterion criterion) {
+        return CriterionOptimizer.optimize(criterion).toString();
+    }
+    
+    /**
+     * Tests flattening and removal of duplicates.
+     */
+    @Test
+    public void flatten() {
+        final Criterion criterion = Restrictions.and(
+            Restrictions.and(Restrictions.eq("a", 1), Restrictions.eq("b", 2)),
+            CustomRestrictions.conjunction(Restrictions.eq("a", 1), Restrictions.isNull("c"), Restrictions.isNull("c"))
+        );
+        Assert.assertEquals("(a=1 and b=2 and c is null)", optimize(criterion));
+    }
+    
+    /**
+     * Tests merging of equalities and in expressions of the same property.
+     */
+    @Test
+    public void mergeIn() {
+        final Criterion criterion = CustomRestrictions.disjunction(
+            Restrictions.eq("a", 1),
+            Restrictions.or(Restrictions.isNull("b"), Restrictions.eq("a", 2)),
+            Restrictions.in("a", Arrays.asList(2, 3)),
+            Restrictions.eq("c", 4)
+        );
+        Assert.assertEquals("(a in (1, 2, 3) or b is null or c=4)", optimize(criterion));
+    }
+    
+    /**
+     * Tests that case insensitive equalities are not merged.
+     */
+    @Test
+    public void ignoreCase() {
+        final Criterion criterion = Restrictions.or(
+            Restrictions.eq("a", "x").ignoreCase(), Restrictions.eq("a", "y")
+        );
+        Assert.assertEquals("(a=x or a=y)", optimize(criterion));
+    }
+    
+    /**
+     * Tests folding of constants.
+     */
+    @Test
+    public void constants() {
+        final Criterion a = Restrictions.eq("a", 1);
+        Assert.assertEquals("1=0", optimize(Restrictions.and(a, Restrictions.sqlRestriction("1=0"))));
+        Assert.assertEquals("1=1", optimize(Restrictions.or(a, Restrictions.sqlRestriction("1=1"))));
+        Assert.assertEquals("a=1", optimize(Restrictions.and(a, Restrictions.conjunction())));
+        Assert.assertEquals("a=1", optimize(Restrictions.or(a, Restrictions.sqlRestriction("1=0"))));
+        Assert.assertEquals("1=1", optimize(Restrictions.disjunction()));
+        Assert.assertEquals("1=0", optimize(Restrictions.not(Restrictions.conjunction())));
+    }
+    
+    /**
+     * Tests removal of double negations.
+     */
+    @Test
+    public void negation() {
+        Assert.assertEquals("a=1", optimize(Restrictions.not(Restrictions.not(Restrictions.eq("a", 1)))));
+    }
+    
+    /**
+     * Tests that unknown criteria are kept as they are.
+     */
+    @Test
+    public void unknown() {
+        final Criterion criterion = Restrictions.sqlRestriction("a = ?", 1, INTEGER);
+        Assert.assertSame(criterion, CriterionOptimizer.optimize(criterion));
+        Assert.assertEquals("(a = ? or a = ?)", optimize(Restrictions.or(
+            Restrictions.sqlRestriction("a = ?", 1, INTEGER), Restrictions.sqlRestriction("a = ?", 2, INTEGER)
+        )));
+    }
+    
+}
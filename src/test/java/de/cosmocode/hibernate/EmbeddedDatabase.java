@@ -0,0 +1,106 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.HSQLDialect;
+
+/**
+ * In-memory databases used by tests which need a real {@link Session},
+ * mapping {@link Item}s with a second level cache.
+ *
+ * @author Willi Schoenborn
+ */
+enum EmbeddedDatabase {
+    
+    H2("org.h2.Driver", "jdbc:h2:mem:", H2Dialect.class),
+    
+    HSQLDB("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:", HSQLDialect.class);
+    
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    
+    private final String driver;
+    private final String url;
+    private final Class<? extends Dialect> dialect;
+    
+    private EmbeddedDatabase(String driver, String url, Class<? extends Dialect> dialect) {
+        this.driver = driver;
+        this.url = url;
+        this.dialect = dialect;
+    }
+    
+    /**
+     * Creates a session factory on a new, empty database.
+     * 
+     * @return a new session factory, which has to be closed by the caller
+     */
+    public SessionFactory open() {
+        final Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.connection.driver_class", driver);
+        configuration.setProperty("hibernate.connection.url", url + "test" + COUNTER.incrementAndGet());
+        configuration.setProperty("hibernate.connection.username", "sa");
+        configuration.setProperty("hibernate.connection.password", "");
+        configuration.setProperty("hibernate.dialect", dialect.getName());
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        configuration.setProperty("hibernate.cache.provider_class", "org.hibernate.cache.HashtableCacheProvider");
+        configuration.setProperty("hibernate.cache.use_second_level_cache", "true");
+        configuration.addResource("de/cosmocode/hibernate/Item.hbm.xml");
+        return configuration.buildSessionFactory();
+    }
+    
+    /**
+     * Saves the given items in a new transaction.
+     * 
+     * @param factory the session factory
+     * @param items the items to save
+     */
+    public static void save(SessionFactory factory, Item... items) {
+        final Session session = factory.openSession();
+        try {
+            final Transaction transaction = session.beginTransaction();
+            for (Item item : items) {
+                session.save(item);
+            }
+            transaction.commit();
+        } finally {
+            session.close();
+        }
+    }
+    
+    /**
+     * Provides all databases as parameters for {@link org.junit.runners.Parameterized} tests.
+     * 
+     * @return one single-element array per database
+     */
+    public static Collection<Object[]> parameters() {
+        final Collection<Object[]> parameters = new ArrayList<Object[]>();
+        for (EmbeddedDatabase database : values()) {
+            parameters.add(new Object[] {database});
+        }
+        return parameters;
+    }
+    
+}
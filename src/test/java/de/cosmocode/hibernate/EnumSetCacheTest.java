@@ -0,0 +1,137 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.lang.ref.WeakReference;
+import java.util.EnumSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link EnumSetCache}.
+ *
+ * @author Willi Schoenborn
+ */
+public class EnumSetCacheTest {
+
+    /**
+     * Small enum using the dense table.
+     *
+     * @author Willi Schoenborn
+     */
+    private static enum Small {
+        
+        A, B, C
+        
+    }
+    
+    /**
+     * Large enum using the bounded map.
+     *
+     * @author Willi Schoenborn
+     */
+    private static enum Large {
+        
+        A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P
+        
+    }
+    
+    /**
+     * Enum whose cache is not referenced by any other test.
+     *
+     * @author Willi Schoenborn
+     */
+    private static enum Unused {
+        
+        A
+        
+    }
+    
+    /**
+     * Tests that caches are shared per enum class.
+     */
+    @Test
+    public void shared() {
+        Assert.assertSame(EnumSetCache.of(Small.class), EnumSetCache.of(Small.class));
+        Assert.assertNotSame(EnumSetCache.of(Small.class), EnumSetCache.of(Large.class));
+    }
+    
+    /**
+     * Tests that decoded sets are independent copies.
+     */
+    @Test
+    public void decode() {
+        final EnumSetCache<Small> cache = EnumSetCache.of(Small.class);
+        final EnumSet<Small> first = cache.decode(5L);
+        Assert.assertEquals(EnumSet.of(Small.A, Small.C), first);
+        first.add(Small.B);
+        Assert.assertEquals(EnumSet.of(Small.A, Small.C), cache.decode(5L));
+        Assert.assertNotSame(cache.decode(5L), cache.decode(5L));
+    }
+    
+    /**
+     * Tests that shared sets are the cached prototypes.
+     */
+    @Test
+    public void sharedSets() {
+        final EnumSetCache<Small> cache = EnumSetCache.of(Small.class);
+        Assert.assertEquals(EnumSet.of(Small.B), cache.shared(2L));
+        Assert.assertSame(cache.shared(2L), cache.shared(2L));
+        Assert.assertNotSame(cache.shared(2L), cache.decode(2L));
+        Assert.assertNotSame(cache.shared(1L << 5), cache.shared(1L << 5));
+    }
+    
+    /**
+     * Tests that caches which are no longer used are released, although
+     * they reference their enum class.
+     */
+    @Test
+    public void released() {
+        final WeakReference<EnumSetCache<Unused>> reference = 
+            new WeakReference<EnumSetCache<Unused>>(EnumSetCache.of(Unused.class));
+        for (int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+        }
+        Assert.assertNull(reference.get());
+    }
+    
+    /**
+     * Tests that flags with unknown bits are decoded, but not cached.
+     */
+    @Test
+    public void unknownBits() {
+        final EnumSetCache<Small> cache = EnumSetCache.of(Small.class);
+        final int size = cache.size();
+        Assert.assertEquals(EnumSet.of(Small.A), cache.decode(1L | 1L << 5));
+        Assert.assertEquals(size, cache.size());
+    }
+    
+    /**
+     * Tests that large enums cache at most {@link EnumSetCache#MAX_ENTRIES} flags.
+     */
+    @Test
+    public void bounded() {
+        final EnumSetCache<Large> cache = EnumSetCache.of(Large.class);
+        for (long flag = 0; flag < EnumSetCache.MAX_ENTRIES * 4; flag++) {
+            Assert.assertEquals(Long.bitCount(flag), cache.decode(flag).size());
+        }
+        Assert.assertEquals(EnumSetCache.MAX_ENTRIES, cache.size());
+        Assert.assertEquals(EnumSet.of(Large.P), cache.decode(1L << 15));
+    }
+    
+}
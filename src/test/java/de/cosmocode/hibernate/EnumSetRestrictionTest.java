@@ -0,0 +1,149 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.EnumSet;
+
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.TypedValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link EnumSetRestriction}s created by {@link CustomRestrictions}.
+ *
+ * @author Willi Schoenborn
+ */
+public class EnumSetRestrictionTest {
+
+    /**
+     * Enum used for testing.
+     *
+     * @author Willi Schoenborn
+     */
+    private static enum Flag {
+        
+        A, B, C
+        
+    }
+    
+    /**
+     * Enum using every bit of a word.
+     *
+     * @author Willi Schoenborn
+     */
+    private static enum Wide {
+        
+        W0, W1, W2, W3, W4, W5, W6, W7, W8, W9, W10, W11, W12, W13, W14, W15,
+        W16, W17, W18, W19, W20, W21, W22, W23, W24, W25, W26, W27, W28, W29, W30, W31,
+        W32, W33, W34, W35, W36, W37, W38, W39, W40, W41, W42, W43, W44, W45, W46, W47,
+        W48, W49, W50, W51, W52, W53, W54, W55, W56, W57, W58, W59, W60, W61, W62, W63
+        
+    }
+    
+    private CriteriaQuery query(String... columns) {
+        return MockCriteriaQuery.of(new MySQLDialect(), "flags", columns);
+    }
+    
+    /**
+     * Tests that different enum combinations render the same sql and bind their flags.
+     */
+    @Test
+    public void bound() {
+        final CriteriaQuery query = query("this_.flags");
+        final Criterion has = CustomRestrictions.has("flags", Flag.B);
+        final Criterion none = CustomRestrictions.none("flags", EnumSet.of(Flag.A, Flag.C));
+        
+        Assert.assertEquals("((this_.flags & ?) <> 0)", has.toSqlString(null, query));
+        Assert.assertEquals("((this_.flags & ?) = 0)", none.toSqlString(null, query));
+        
+        final TypedValue[] values = none.getTypedValues(null, query);
+        Assert.assertEquals(1, values.length);
+        Assert.assertEquals(Long.valueOf(5L), values[0].getValue());
+    }
+    
+    /**
+     * Tests properties spanning multiple columns.
+     */
+    @Test
+    public void words() {
+        final CriteriaQuery query = query("this_.flags0", "this_.flags1");
+        final Criterion has = CustomRestrictions.has("flags", Flag.C);
+        
+        Assert.assertEquals("(((this_.flags0 & ?) <> 0) or ((this_.flags1 & ?) <> 0))", has.toSqlString(null, query));
+        
+        final TypedValue[] values = has.getTypedValues(null, query);
+        Assert.assertEquals(2, values.length);
+        Assert.assertEquals(Long.valueOf(4L), values[0].getValue());
+        Assert.assertEquals(Long.valueOf(0L), values[1].getValue());
+    }
+    
+    /**
+     * Tests that "contains all" binds every word twice and requires every word to match.
+     */
+    @Test
+    public void hasAll() {
+        final CriteriaQuery query = query("this_.flags0", "this_.flags1");
+        final Criterion all = CustomRestrictions.hasAll("flags", EnumSet.of(Flag.A, Flag.C));
+        
+        Assert.assertEquals("(((this_.flags0 & ?) = ?) and ((this_.flags1 & ?) = ?))", all.toSqlString(null, query));
+        
+        final TypedValue[] values = all.getTypedValues(null, query);
+        Assert.assertEquals(4, values.length);
+        Assert.assertEquals(Long.valueOf(5L), values[0].getValue());
+        Assert.assertEquals(Long.valueOf(5L), values[1].getValue());
+        Assert.assertEquals(Long.valueOf(0L), values[2].getValue());
+        Assert.assertEquals(Long.valueOf(0L), values[3].getValue());
+    }
+    
+    /**
+     * Tests that the join of several words is specified explicitly, not derived from the operator.
+     */
+    @Test
+    public void join() {
+        final CriteriaQuery query = query("this_.flags0", "this_.flags1");
+        final Criterion any = new EnumSetRestriction<Flag>(
+            "flags", "&", EnumSet.of(Flag.A), "=", 1, EnumSetRestriction.Join.ANY);
+        Assert.assertEquals("(((this_.flags0 & ?) = 1) or ((this_.flags1 & ?) = 1))", any.toSqlString(null, query));
+        
+        Assert.assertEquals("(((this_.flags0 & ?) <> 0) or ((this_.flags1 & ?) <> 0))", 
+            CustomRestrictions.all("flags", EnumSet.of(Flag.A, Flag.B)).toSqlString(null, query));
+        Assert.assertEquals("(((this_.flags0 & ?) = 0) and ((this_.flags1 & ?) = 0))", 
+            CustomRestrictions.none("flags", EnumSet.of(Flag.A, Flag.B)).toSqlString(null, query));
+    }
+    
+    /**
+     * Tests that a word having its highest bit set, which is negative, still matches
+     * and renders the same comparison as {@link BitMatchMode#ANY}.
+     */
+    @Test
+    public void highestBit() {
+        final CriteriaQuery query = query("this_.flags");
+        final Criterion has = CustomRestrictions.has("flags", Wide.W63);
+        
+        Assert.assertEquals("((this_.flags & ?) <> 0)", has.toSqlString(null, query));
+        Assert.assertEquals(BitwiseRestrictions.containsAny("flags", Long.MIN_VALUE).toSqlString(null, query),
+            has.toSqlString(null, query));
+        
+        final TypedValue[] values = has.getTypedValues(null, query);
+        Assert.assertEquals(1, values.length);
+        Assert.assertEquals(Long.valueOf(Long.MIN_VALUE), values[0].getValue());
+    }
+    
+}
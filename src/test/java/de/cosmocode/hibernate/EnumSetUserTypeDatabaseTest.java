@@ -0,0 +1,118 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Collection;
+import java.util.EnumSet;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests {@link EnumSetUserType} against {@link EmbeddedDatabase}s.
+ *
+ * @author Willi Schoenborn
+ */
+@RunWith(Parameterized.class)
+public class EnumSetUserTypeDatabaseTest {
+
+    private final EmbeddedDatabase database;
+    
+    private SessionFactory factory;
+    
+    private Item apple;
+    
+    private Item apricot;
+    
+    public EnumSetUserTypeDatabaseTest(EmbeddedDatabase database) {
+        this.database = database;
+    }
+    
+    /**
+     * Provides the databases.
+     * 
+     * @return all {@link EmbeddedDatabase}s
+     */
+    @Parameters
+    public static Collection<Object[]> parameters() {
+        return EmbeddedDatabase.parameters();
+    }
+    
+    /**
+     * Creates and fills the database.
+     */
+    @Before
+    public void before() {
+        factory = database.open();
+        apple = new Item("a", "apple", ItemFlag.RED);
+        apricot = new Item("a", "apricot", ItemFlag.RED);
+        EmbeddedDatabase.save(factory, apple, apricot);
+    }
+    
+    /**
+     * Drops the database.
+     */
+    @After
+    public void after() {
+        factory.close();
+    }
+    
+    private EnumSet<ItemFlag> flags(Item item) {
+        final Session session = factory.openSession();
+        try {
+            return EnumSet.copyOf(Item.class.cast(session.get(Item.class, item.getId())).getFlags());
+        } finally {
+            session.close();
+        }
+    }
+    
+    /**
+     * Tests that modifying a loaded set is detected, although loaded states
+     * of equal sets are shared, and does not affect other entities.
+     */
+    @Test
+    public void dirtyChecking() {
+        factory.getCache().evictEntityRegions();
+        final Session session = factory.openSession();
+        try {
+            final Transaction transaction = session.beginTransaction();
+            final Item first = Item.class.cast(session.get(Item.class, apple.getId()));
+            final Item second = Item.class.cast(session.get(Item.class, apricot.getId()));
+            Assert.assertNotSame(first.getFlags(), second.getFlags());
+            first.getFlags().add(ItemFlag.GREEN);
+            session.flush();
+            first.getFlags().add(ItemFlag.BLUE);
+            second.getFlags().remove(ItemFlag.RED);
+            transaction.commit();
+        } finally {
+            session.close();
+        }
+        factory.getCache().evictEntityRegions();
+        Assert.assertEquals(EnumSet.allOf(ItemFlag.class), flags(apple));
+        Assert.assertEquals(EnumSet.noneOf(ItemFlag.class), flags(apricot));
+        Assert.assertEquals(EnumSet.of(ItemFlag.RED), EnumSetCache.of(ItemFlag.class).decode(1L));
+    }
+    
+}
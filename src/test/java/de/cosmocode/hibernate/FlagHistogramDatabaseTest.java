@@ -0,0 +1,170 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.Projections;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * Tests {@link FlagHistogramProjection} against {@link EmbeddedDatabase}s,
+ * alone and mixed with other projections.
+ *
+ * @author Willi Schoenborn
+ */
+@RunWith(Parameterized.class)
+public class FlagHistogramDatabaseTest {
+
+    private final EmbeddedDatabase database;
+    
+    private SessionFactory factory;
+    
+    public FlagHistogramDatabaseTest(EmbeddedDatabase database) {
+        this.database = database;
+    }
+    
+    /**
+     * Provides the databases.
+     * 
+     * @return all {@link EmbeddedDatabase}s
+     */
+    @Parameters
+    public static Collection<Object[]> parameters() {
+        return EmbeddedDatabase.parameters();
+    }
+    
+    /**
+     * Creates and fills the database.
+     */
+    @Before
+    public void before() {
+        factory = database.open();
+        EmbeddedDatabase.save(factory, 
+            new Item("a", "Apple", ItemFlag.RED, ItemFlag.BLUE),
+            new Item("a", "apricot", ItemFlag.RED),
+            new Item("b", "Banana", ItemFlag.GREEN, ItemFlag.BLUE),
+            new Item("b", "blueberry", ItemFlag.BLUE)
+        );
+    }
+    
+    /**
+     * Drops the database.
+     */
+    @After
+    public void after() {
+        factory.close();
+    }
+    
+    private List<?> list(Projection projection) {
+        final Session session = factory.openSession();
+        try {
+            return session.createCriteria(Item.class).
+                setProjection(projection).
+                addOrder(Order.asc("owner")).
+                list();
+        } finally {
+            session.close();
+        }
+    }
+    
+    private EnumMap<ItemFlag, Long> counts(long red, long green, long blue) {
+        return Maps.newEnumMap(ImmutableMap.of(
+            ItemFlag.RED, Long.valueOf(red), 
+            ItemFlag.GREEN, Long.valueOf(green), 
+            ItemFlag.BLUE, Long.valueOf(blue)
+        ));
+    }
+    
+    /**
+     * Tests counting all rows.
+     */
+    @Test
+    public void histogram() {
+        final FlagHistogramProjection<ItemFlag> histogram = BitwiseProjections.flagHistogram("flags", ItemFlag.class);
+        final Session session = factory.openSession();
+        try {
+            final Object[] row = (Object[]) session.createCriteria(Item.class).
+                setProjection(histogram).
+                uniqueResult();
+            Assert.assertEquals(counts(2, 1, 3), histogram.toEnumMap(row));
+        } finally {
+            session.close();
+        }
+    }
+    
+    /**
+     * Tests counting per group, using a selected group property
+     * in front of the histogram.
+     */
+    @Test
+    public void grouped() {
+        final FlagHistogramProjection<ItemFlag> histogram = BitwiseProjections.flagHistogram("flags", ItemFlag.class);
+        final List<?> rows = list(Projections.projectionList().
+            add(Projections.groupProperty("owner")).
+            add(histogram).
+            add(Projections.rowCount()));
+        Assert.assertEquals(2, rows.size());
+        final Object[] a = (Object[]) rows.get(0);
+        Assert.assertEquals("a", a[0]);
+        Assert.assertEquals(counts(2, 0, 1), histogram.toEnumMap(a, 1));
+        Assert.assertEquals(2L, Number.class.cast(a[4]).longValue());
+        final Object[] b = (Object[]) rows.get(1);
+        Assert.assertEquals("b", b[0]);
+        Assert.assertEquals(counts(0, 1, 2), histogram.toEnumMap(b, 1));
+        Assert.assertEquals(2L, Number.class.cast(b[4]).longValue());
+    }
+    
+    /**
+     * Tests counting per group using a {@link GroupOnlyProjection}, which
+     * must not shift the aliases of the projections around it.
+     */
+    @Test
+    public void groupOnly() {
+        final FlagHistogramProjection<ItemFlag> histogram = BitwiseProjections.flagHistogram("flags", ItemFlag.class);
+        final CustomProjectionList projection = new CustomProjectionList();
+        projection.add(histogram);
+        projection.add(BitwiseProjections.bitOr("flags", ItemFlag.class));
+        projection.add(new GroupOnlyProjection("owner"));
+        final List<?> rows = list(projection);
+        Assert.assertEquals(2, rows.size());
+        final Object[] a = (Object[]) rows.get(0);
+        Assert.assertEquals(4, a.length);
+        Assert.assertEquals(counts(2, 0, 1), histogram.toEnumMap(a));
+        Assert.assertEquals(EnumSet.of(ItemFlag.RED, ItemFlag.BLUE), a[3]);
+        final Object[] b = (Object[]) rows.get(1);
+        Assert.assertEquals(counts(0, 1, 2), histogram.toEnumMap(b));
+        Assert.assertEquals(EnumSet.of(ItemFlag.GREEN, ItemFlag.BLUE), b[3]);
+    }
+    
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.cosmocode.hibernate;
+
+import java.util.EnumMap;
+
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.dialect.H2Dialect;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link FlagHistogramProjection}.
+ *
+ * @author Willi Schoenborn
+ */
+public class FlagHistogramProjectionTest {
+
+    /**
+     * Enum used for testing.
+     *
+     * @author Willi Schoenborn
+     */
+    private static enum Color {
+        
+        RED, GREEN, BLUE
+        
+    }
+    
+    private CriteriaQuery query() {
+        return MockCriteriaQuery.of(new H2Dialect(), "flags", "this_.flags");
+    }
+    
+    /**
+     * Tests rendering of one sum per constant, followed by a group only projection.
+     */
+    @Test
+    public void render() {
+        final CustomProjectionList list = new CustomProjectionList();
+        list.add(BitwiseProjections.flagHistogram("flags", Color.class));
+        list.add(new GroupOnlyProjection("owner"));
+        Assert.assertEquals(
+            "sum(case when bitand(this_.flags, 1) <> 0 then 1 else 0 end) as y0_, " +
+            "sum(case when bitand(this_.flags, 2) <> 0 then 1 else 0 end) as y1_, " +
+            "sum(case when bitand(this_.flags, 4) <> 0 then 1 else 0 end) as y2_",
+            list.toSqlString(null, 0, query()));
+        Assert.assertArrayEquals(new String[] {"y0_", "y1_", "y2_"}, list.getColumnAliases(0));
+        Assert.assertEquals(3, list.getTypes(null, query()).length);
+    }
+    
+    /**
+     * Tests {@link FlagHistogramProjection#toEnumMap(Object[], int)}.
+     */
+    @Test
+    public void toEnumMap() {
+        final FlagHistogramProjection<Color> projection = BitwiseProjections.flagHistogram("flags", Color.class);
+        final EnumMap<Color, Long> map = projection.toEnumMap(new Object[] {"a", 2L, null, 5L}, 1);
+        Assert.assertEquals(Long.valueOf(2L), map.get(Color.RED));
+        Assert.assertEquals(Long.valueOf(0L), map.get(Color.GREEN));
+        Assert.assertEquals(Long.valueOf(5L), map.get(Color.BLUE));
+    }
+    
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Projections;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Tests {@link FlagIndexes} against {@link EmbeddedDatabase}s.
+ *
+ * @author Willi Schoenborn
+ */
+@RunWith(Parameterized.class)
+public class FlagIndexesDatabaseTest {
+
+    private final EmbeddedDatabase database;
+    
+    private SessionFactory factory;
+    
+    public FlagIndexesDatabaseTest(EmbeddedDatabase database) {
+        this.database = database;
+    }
+    
+    /**
+     * Provides the databases.
+     * 
+     * @return all {@link EmbeddedDatabase}s
+     */
+    @Parameters
+    public static Collection<Object[]> parameters() {
+        return EmbeddedDatabase.parameters();
+    }
+    
+    /**
+     * Creates and fills the database.
+     */
+    @Before
+    public void before() {
+        factory = database.open();
+        EmbeddedDatabase.save(factory, 
+            new Item("a", "apple", ItemFlag.RED, ItemFlag.BLUE),
+            new Item("a", "apricot", ItemFlag.RED),
+            new Item("b", "banana", ItemFlag.GREEN, ItemFlag.BLUE),
+            new Item("b", "blueberry", ItemFlag.BLUE),
+            new Item("c", "cucumber")
+        );
+    }
+    
+    /**
+     * Drops the database.
+     */
+    @After
+    public void after() {
+        factory.close();
+    }
+    
+    private Set<?> names(Criterion criterion) {
+        final Session session = factory.openSession();
+        try {
+            final List<?> names = session.createCriteria(Item.class).
+                add(criterion).
+                setProjection(Projections.property("name")).
+                list();
+            return ImmutableSet.copyOf(names);
+        } finally {
+            session.close();
+        }
+    }
+    
+    /**
+     * Tests the in-lists of has, any and none.
+     */
+    @Test
+    public void inLists() {
+        Assert.assertEquals(ImmutableSet.of("apple", "apricot"), names(FlagIndexes.has("flags", ItemFlag.RED)));
+        Assert.assertEquals(ImmutableSet.of("apple", "apricot", "banana"), 
+            names(FlagIndexes.any("flags", EnumSet.of(ItemFlag.RED, ItemFlag.GREEN), ItemFlag.class)));
+        Assert.assertEquals(ImmutableSet.of(), 
+            names(FlagIndexes.any("flags", EnumSet.noneOf(ItemFlag.class), ItemFlag.class)));
+        Assert.assertEquals(ImmutableSet.of("apricot", "cucumber"), 
+            names(FlagIndexes.none("flags", EnumSet.of(ItemFlag.GREEN, ItemFlag.BLUE), ItemFlag.class)));
+        Assert.assertEquals(ImmutableSet.of("cucumber"), 
+            names(FlagIndexes.none("flags", EnumSet.allOf(ItemFlag.class), ItemFlag.class)));
+    }
+    
+    /**
+     * Tests restricting using generated columns, which are added after the rows
+     * have been inserted.
+     */
+    @Test
+    public void generatedColumns() {
+        final Session session = factory.openSession();
+        try {
+            final Transaction transaction = session.beginTransaction();
+            final SessionFactoryImplementor implementor = SessionFactoryImplementor.class.cast(factory);
+            for (String statement : FlagIndexes.generatedColumns(
+                implementor.getDialect(), "item", "flags", ItemFlag.class)) {
+                session.createSQLQuery(statement).executeUpdate();
+            }
+            transaction.commit();
+        } finally {
+            session.close();
+        }
+        Assert.assertEquals(ImmutableSet.of("apple", "banana", "blueberry"), 
+            names(FlagIndexes.hasColumn("flags", ItemFlag.BLUE)));
+        Assert.assertEquals(ImmutableSet.of("banana", "blueberry", "cucumber"), 
+            names(FlagIndexes.notHasColumn("flags", ItemFlag.RED)));
+    }
+    
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.Oracle10gDialect;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link FlagIndexes}.
+ *
+ * @author Willi Schoenborn
+ */
+public class FlagIndexesTest {
+
+    /**
+     * Enum used for testing.
+     *
+     * @author Willi Schoenborn
+     */
+    private static enum Flag {
+        
+        READ, WRITE, EXECUTE_IMMEDIATELY
+        
+    }
+    
+    /**
+     * Enum used for testing, too large for in-lists.
+     *
+     * @author Willi Schoenborn
+     */
+    private static enum Large {
+        
+        A, B, C, D, E, F, G, H, I
+        
+    }
+    
+    /**
+     * Tests the flag values enumerated by {@link FlagIndexes#has(String, Enum)}.
+     */
+    @Test
+    public void has() {
+        Assert.assertEquals("flags in ([WRITE], [READ, WRITE], [WRITE, EXECUTE_IMMEDIATELY], " + 
+            "[READ, WRITE, EXECUTE_IMMEDIATELY])", FlagIndexes.has("flags", Flag.WRITE).toString());
+    }
+    
+    /**
+     * Tests the flag values enumerated by {@link FlagIndexes#any(String, java.util.Set, Class)}.
+     */
+    @Test
+    public void any() {
+        Assert.assertEquals("flags in ([READ], [WRITE], [READ, WRITE], [READ, EXECUTE_IMMEDIATELY], " + 
+            "[WRITE, EXECUTE_IMMEDIATELY], [READ, WRITE, EXECUTE_IMMEDIATELY])", 
+            FlagIndexes.any("flags", EnumSet.of(Flag.READ, Flag.WRITE), Flag.class).toString());
+        Assert.assertEquals("1=0", FlagIndexes.any("flags", EnumSet.noneOf(Flag.class), Flag.class).toString());
+    }
+    
+    /**
+     * Tests the flag values enumerated by {@link FlagIndexes#none(String, java.util.Set, Class)}.
+     */
+    @Test
+    public void none() {
+        Assert.assertEquals("flags in ([], [EXECUTE_IMMEDIATELY])", 
+            FlagIndexes.none("flags", EnumSet.of(Flag.READ, Flag.WRITE), Flag.class).toString());
+        Assert.assertEquals("flags in ([])", 
+            FlagIndexes.none("flags", EnumSet.allOf(Flag.class), Flag.class).toString());
+        final String all = FlagIndexes.none("flags", EnumSet.noneOf(Flag.class), Flag.class).toString();
+        Assert.assertTrue(all.startsWith("flags in ([], [READ], "));
+        Assert.assertTrue(all.endsWith(", [READ, WRITE, EXECUTE_IMMEDIATELY])"));
+    }
+    
+    /**
+     * Tests that enums with more than {@link FlagIndexes#MAX_IN_LIST_CONSTANTS} constants
+     * fall back to bitwise restrictions.
+     */
+    @Test
+    public void fallback() {
+        Assert.assertEquals(9, Large.values().length);
+        final Criterion any = FlagIndexes.any("flags", EnumSet.of(Large.A, Large.I), Large.class);
+        Assert.assertEquals("flags bit ANY 257", any.toString());
+        final Criterion none = FlagIndexes.none("flags", EnumSet.of(Large.B), Large.class);
+        Assert.assertEquals("flags bit NONE 2", none.toString());
+        Assert.assertEquals("flags bit ANY 256", FlagIndexes.has("flags", Large.I).toString());
+    }
+    
+    /**
+     * Tests that the deprecated {@link org.hibernate.dialect.Oracle9Dialect} renders virtual columns.
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void oracle9() {
+        final List<String> ddl = FlagIndexes.generatedColumns(
+            new org.hibernate.dialect.Oracle9Dialect(), "users", "flags", Flag.class);
+        Assert.assertEquals(
+            "alter table users add flags_read number(1) generated always as " +
+            "(case when bitand(flags, 1) <> 0 then 1 else 0 end) virtual", ddl.get(0));
+        Assert.assertEquals("create index users_flags_read_idx on users (flags_read)", ddl.get(1));
+    }
+    
+    /**
+     * Tests that index names are shortened to 30 characters on oracle and kept unique.
+     */
+    @Test
+    public void oracleIndexNames() {
+        final List<String> ddl = FlagIndexes.generatedColumns(
+            new Oracle10gDialect(), "user_permissions", "flags", Flag.class);
+        final String write = FlagIndexes.indexName(new Oracle10gDialect(), "user_permissions", "flags_write");
+        final String execute = FlagIndexes.indexName(
+            new Oracle10gDialect(), "user_permissions", "flags_execute_immediately");
+        
+        Assert.assertEquals(30, write.length());
+        Assert.assertEquals(30, execute.length());
+        Assert.assertTrue(write.startsWith("user_permissions_flag_"));
+        Assert.assertFalse(write.equals(execute));
+        Assert.assertEquals(write, FlagIndexes.indexName(new Oracle10gDialect(), "user_permissions", "flags_write"));
+        Assert.assertEquals("create index " + write + " on user_permissions (flags_write)", ddl.get(3));
+    }
+    
+    /**
+     * Tests that index names are left untouched on other databases.
+     */
+    @Test
+    public void mysqlIndexNames() {
+        Assert.assertEquals("user_permissions_flags_execute_immediately_idx", 
+            FlagIndexes.indexName(new MySQLDialect(), "user_permissions", "flags_execute_immediately"));
+        Assert.assertEquals("users_flags_read_idx", 
+            FlagIndexes.indexName(new Oracle10gDialect(), "users", "flags_read"));
+    }
+    
+    /**
+     * Tests that generated column names are shortened to 30 characters on oracle
+     * and used as such by {@link FlagColumnExpression}.
+     */
+    @Test
+    public void oracleColumnNames() {
+        final Oracle10gDialect dialect = new Oracle10gDialect();
+        final String column = FlagIndexes.columnName(dialect, "permission_flags", Flag.EXECUTE_IMMEDIATELY);
+        Assert.assertEquals(30, column.length());
+        Assert.assertTrue(column.startsWith("permission_flags_exe"));
+        Assert.assertEquals("permission_flags_read", FlagIndexes.columnName(dialect, "permission_flags", Flag.READ));
+        Assert.assertEquals("this_." + column, 
+            FlagIndexes.columnName(dialect, "this_.permission_flags", Flag.EXECUTE_IMMEDIATELY));
+        Assert.assertEquals("permission_flags_execute_immediately", 
+            FlagIndexes.columnName(new MySQLDialect(), "permission_flags", Flag.EXECUTE_IMMEDIATELY));
+        
+        final List<String> ddl = FlagIndexes.generatedColumns(dialect, "users", "permission_flags", Flag.class);
+        Assert.assertTrue(ddl.get(4).startsWith("alter table users add " + column + " number(1)"));
+        
+        final CriteriaQuery query = MockCriteriaQuery.of(dialect, "flags", "this_.permission_flags");
+        Assert.assertEquals("this_." + column + " = ?", 
+            FlagIndexes.hasColumn("flags", Flag.EXECUTE_IMMEDIATELY).toSqlString(null, query));
+        final CriteriaQuery h2 = MockCriteriaQuery.of(new H2Dialect(), "flags", "this_.permission_flags");
+        Assert.assertEquals("this_.permission_flags_execute_immediately = ?", 
+            FlagIndexes.notHasColumn("flags", Flag.EXECUTE_IMMEDIATELY).toSqlString(null, h2));
+    }
+    
+}
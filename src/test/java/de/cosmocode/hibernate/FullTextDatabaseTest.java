@@ -0,0 +1,156 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.jdbc.Work;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests {@link FullTextExpression}s against {@link EmbeddedDatabase}s, using the native
+ * full-text search of H2 and the ilike fallback on HSQLDB.
+ *
+ * @author Willi Schoenborn
+ */
+@RunWith(Parameterized.class)
+public class FullTextDatabaseTest {
+
+    private final EmbeddedDatabase database;
+    
+    private SessionFactory factory;
+    
+    public FullTextDatabaseTest(EmbeddedDatabase database) {
+        this.database = database;
+    }
+    
+    /**
+     * Provides the databases.
+     * 
+     * @return all {@link EmbeddedDatabase}s
+     */
+    @Parameters
+    public static Collection<Object[]> parameters() {
+        return EmbeddedDatabase.parameters();
+    }
+    
+    /**
+     * Creates the database, indexes the name column on H2 and fills it.
+     */
+    @Before
+    public void before() {
+        factory = database.open();
+        if (database == EmbeddedDatabase.H2) {
+            final Session session = factory.openSession();
+            try {
+                session.doWork(new Work() {
+                    
+                    @Override
+                    public void execute(Connection connection) throws SQLException {
+                        final Statement statement = connection.createStatement();
+                        try {
+                            statement.execute(
+                                "create alias if not exists ft_init for \"org.h2.fulltext.FullText.init\"");
+                            statement.execute("call ft_init()");
+                            statement.execute("call ft_create_index('PUBLIC', 'ITEM', 'NAME')");
+                        } finally {
+                            statement.close();
+                        }
+                    }
+                    
+                });
+            } finally {
+                session.close();
+            }
+        }
+        EmbeddedDatabase.save(factory,
+            new Item("o", "Hello World"),
+            new Item("world", "hello there"),
+            new Item("o", "nothing"),
+            new Item("o", ""));
+    }
+    
+    /**
+     * Drops the database.
+     */
+    @After
+    public void after() {
+        factory.close();
+    }
+    
+    private List<?> ids(String query) {
+        final Session session = factory.openSession();
+        try {
+            return session.createCriteria(Item.class).
+                add(CustomRestrictions.fullText("name", query)).
+                setProjection(Projections.id()).
+                addOrder(Order.asc("id")).
+                list();
+        } finally {
+            session.close();
+        }
+    }
+    
+    /**
+     * Tests that words match case insensitively and only in the restricted property.
+     */
+    @Test
+    public void words() {
+        Assert.assertEquals(Arrays.asList(1L, 2L), ids("hello"));
+        Assert.assertEquals(Arrays.asList(1L), ids("World"));
+        Assert.assertEquals(Arrays.asList(), ids("nowhere"));
+    }
+    
+    /**
+     * Tests that empty queries match empty values.
+     */
+    @Test
+    public void empty() {
+        Assert.assertEquals(Arrays.asList(4L), ids(""));
+    }
+    
+    /**
+     * Tests that the table name is resolved independent of the default locale.
+     */
+    @Test
+    public void locale() {
+        final Locale locale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            Assert.assertEquals(Arrays.asList(1L, 2L), ids("hello"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+    
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.cosmocode.hibernate;
+
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.HSQLDialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link FullTextExpression} using different dialects.
+ *
+ * @author Willi Schoenborn
+ */
+public class FullTextExpressionTest {
+
+    private CriteriaQuery query(Dialect dialect) {
+        return MockCriteriaQuery.of(dialect, "text", "this_.text");
+    }
+    
+    /**
+     * Tests rendering using match against.
+     */
+    @Test
+    public void mysql() {
+        Assert.assertEquals("match(this_.text) against (?)", 
+            CustomRestrictions.fullText("text", "hello").toSqlString(null, query(new MySQLDialect())));
+    }
+    
+    /**
+     * Tests rendering using text search vectors and queries.
+     */
+    @Test
+    public void postgresql() {
+        Assert.assertEquals("to_tsvector('english', this_.text) @@ plainto_tsquery('english', ?)", 
+            CustomRestrictions.fullText("text", "hello", "english").toSqlString(null, query(new PostgreSQLDialect())));
+    }
+    
+    /**
+     * Tests the ilike fallback.
+     */
+    @Test
+    public void fallback() {
+        Assert.assertEquals("lower(this_.text) like ?", 
+            CustomRestrictions.fullText("text", "hello").toSqlString(null, query(new HSQLDialect())));
+    }
+    
+    /**
+     * Tests that illegal configurations are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void illegalConfiguration() {
+        CustomRestrictions.fullText("text", "hello", "english'); drop table x; --");
+    }
+    
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Entity used by tests running against an {@link EmbeddedDatabase}, see Item.hbm.xml.
+ *
+ * @author Willi Schoenborn
+ */
+public class Item {
+
+    private Long id;
+    
+    private String owner;
+    
+    private String name;
+    
+    private Set<ItemFlag> flags = EnumSet.noneOf(ItemFlag.class);
+    
+    private long bits;
+    
+    public Item() {
+        
+    }
+    
+    public Item(String owner, String name, ItemFlag... flags) {
+        this.owner = owner;
+        this.name = name;
+        this.flags.addAll(Arrays.asList(flags));
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getOwner() {
+        return owner;
+    }
+    
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public Set<ItemFlag> getFlags() {
+        return flags;
+    }
+    
+    public void setFlags(Set<ItemFlag> flags) {
+        this.flags = flags;
+    }
+    
+    public long getBits() {
+        return bits;
+    }
+    
+    public void setBits(long bits) {
+        this.bits = bits;
+    }
+    
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link KeysetPager}.
+ *
+ * @author Willi Schoenborn
+ */
+public class KeysetPagerTest {
+
+    private KeysetPager<Object> unit(String... keyProperties) {
+        return new KeysetPager<Object>(DetachedCriteria.forClass(Object.class), 10, keyProperties);
+    }
+    
+    private Object[] roundTrip(Object... key) {
+        final String[] properties = new String[key.length];
+        for (int i = 0; i < key.length; i++) {
+            properties[i] = "p" + i;
+        }
+        final KeysetPager<Object> unit = unit(properties);
+        return unit.decode(unit.encode(key));
+    }
+    
+    /**
+     * Tests encoding and decoding of longs.
+     */
+    @Test
+    public void longs() {
+        final Object[] key = {Long.valueOf(Long.MIN_VALUE), Long.valueOf(0L), Long.valueOf(Long.MAX_VALUE)};
+        Assert.assertArrayEquals(key, roundTrip(key));
+    }
+    
+    /**
+     * Tests encoding and decoding of integers.
+     */
+    @Test
+    public void integers() {
+        final Object[] key = {Integer.valueOf(-1), Integer.valueOf(Integer.MAX_VALUE)};
+        final Object[] decoded = roundTrip(key);
+        Assert.assertArrayEquals(key, decoded);
+        Assert.assertTrue(decoded[0] instanceof Integer);
+    }
+    
+    /**
+     * Tests encoding and decoding of strings containing separators and special characters.
+     */
+    @Test
+    public void strings() {
+        final Object[] key = {"", "a,b", "100% \"sure\"\n", "\u00e4\u00f6\u00fc \u20ac", "+ &="};
+        Assert.assertArrayEquals(key, roundTrip(key));
+    }
+    
+    /**
+     * Tests encoding and decoding of dates.
+     */
+    @Test
+    public void dates() {
+        final Object[] key = {new Date(1287310000123L), new Date(-1L)};
+        Assert.assertArrayEquals(key, roundTrip(key));
+    }
+    
+    /**
+     * Tests that timestamps keep their nanoseconds.
+     */
+    @Test
+    public void timestamps() {
+        final Timestamp timestamp = new Timestamp(1287310000123L);
+        timestamp.setNanos(123456789);
+        final Timestamp negative = new Timestamp(-1L);
+        negative.setNanos(999000001);
+        final Object[] decoded = roundTrip(timestamp, negative);
+        Assert.assertTrue(decoded[0] instanceof Timestamp);
+        Assert.assertEquals(timestamp, decoded[0]);
+        Assert.assertEquals(123456789, Timestamp.class.cast(decoded[0]).getNanos());
+        Assert.assertEquals(negative, decoded[1]);
+    }
+    
+    /**
+     * Tests a composite key of different types.
+     */
+    @Test
+    public void mixed() {
+        final Object[] key = {"x,y", Long.valueOf(7L), new Date(0L), Integer.valueOf(3)};
+        Assert.assertArrayEquals(key, roundTrip(key));
+    }
+    
+    /**
+     * Tests that unsupported key values are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupported() {
+        unit("p").encode(new Object[] {Double.valueOf(1.0)});
+    }
+    
+    /**
+     * Tests that tokens with the wrong number of values are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedLength() {
+        unit("a", "b").decode("L1");
+    }
+    
+    /**
+     * Tests that tokens with unknown types are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedType() {
+        unit("a").decode("X1");
+    }
+    
+    /**
+     * Tests that malformed timestamps are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedTimestamp() {
+        unit("a").decode("T123");
+    }
+    
+    /**
+     * Tests that ordered criteria are rejected, because the orders would break the seek predicate.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void ordered() {
+        new KeysetPager<Object>(DetachedCriteria.forClass(Object.class).addOrder(Order.desc("name")), 10, "id");
+    }
+    
+}
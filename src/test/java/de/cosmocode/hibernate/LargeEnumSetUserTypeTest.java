@@ -0,0 +1,144 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link LargeEnumSetUserType} and {@link EnumWords}.
+ *
+ * @author Willi Schoenborn
+ */
+public class LargeEnumSetUserTypeTest {
+
+    /**
+     * Enum spanning two words.
+     *
+     * @author Willi Schoenborn
+     */
+    private static enum Wide {
+        
+        W0, W1, W2, W3, W4, W5, W6, W7, W8, W9, W10, W11, W12, W13,
+        W14, W15, W16, W17, W18, W19, W20, W21, W22, W23, W24, W25, W26, W27,
+        W28, W29, W30, W31, W32, W33, W34, W35, W36, W37, W38, W39, W40, W41,
+        W42, W43, W44, W45, W46, W47, W48, W49, W50, W51, W52, W53, W54, W55,
+        W56, W57, W58, W59, W60, W61, W62, W63, W64, W65, W66, W67, W68, W69
+        
+    }
+    
+    /**
+     * User type used for testing.
+     *
+     * @author Willi Schoenborn
+     */
+    private static final class WideSetType extends LargeEnumSetUserType<Wide> {
+        
+        public WideSetType() {
+            super(Wide.class);
+        }
+        
+    }
+    
+    /**
+     * Tests the number of words per enum type.
+     */
+    @Test
+    public void words() {
+        Assert.assertEquals(2, EnumWords.words(Wide.class));
+        Assert.assertEquals(1, EnumWords.words(Thread.State.class));
+        Assert.assertArrayEquals(new int[] {Types.BIGINT, Types.BIGINT}, new WideSetType().sqlTypes());
+    }
+    
+    /**
+     * Tests encoding of the constants next to the 64 bit boundary.
+     */
+    @Test
+    public void boundary() {
+        Assert.assertArrayEquals(new long[] {Long.MIN_VALUE, 0L}, EnumWords.encode(EnumSet.of(Wide.W63), 2));
+        Assert.assertArrayEquals(new long[] {0L, 1L}, EnumWords.encode(EnumSet.of(Wide.W64), 2));
+        Assert.assertArrayEquals(new long[] {1L | Long.MIN_VALUE, 1L | 1L << 5}, 
+            EnumWords.encode(EnumSet.of(Wide.W0, Wide.W63, Wide.W64, Wide.W69), 2));
+        
+        final Set<Wide> all = EnumSet.allOf(Wide.class);
+        Assert.assertEquals(all, EnumWords.decode(Wide.class, EnumWords.encode(all, 2)));
+        Assert.assertEquals(EnumSet.of(Wide.W63, Wide.W64), 
+            EnumWords.decode(Wide.class, new long[] {Long.MIN_VALUE, 1L}));
+    }
+    
+    /**
+     * Tests that bits without a matching constant are ignored.
+     */
+    @Test
+    public void unknownBits() {
+        Assert.assertEquals(EnumSet.of(Wide.W69), EnumWords.decode(Wide.class, new long[] {0L, -1L << 5}));
+    }
+    
+    /**
+     * Tests that constants which don't fit are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void overflow() {
+        EnumWords.encode(EnumSet.of(Wide.W64), 1);
+    }
+    
+    /**
+     * Tests reading all columns of a property.
+     * 
+     * @throws SQLException should not happen
+     */
+    @Test
+    public void nullSafeGet() throws SQLException {
+        final ResultSet resultSet = EasyMock.createMock(ResultSet.class);
+        EasyMock.expect(resultSet.getLong("flags0")).andReturn(Long.MIN_VALUE | 2L);
+        EasyMock.expect(resultSet.getLong("flags1")).andReturn(1L);
+        EasyMock.replay(resultSet);
+        
+        Assert.assertEquals(EnumSet.of(Wide.W1, Wide.W63, Wide.W64), 
+            new WideSetType().nullSafeGet(resultSet, new String[] {"flags0", "flags1"}, null));
+        EasyMock.verify(resultSet);
+    }
+    
+    /**
+     * Tests binding all columns of a property, starting at the given index.
+     * 
+     * @throws SQLException should not happen
+     */
+    @Test
+    public void nullSafeSet() throws SQLException {
+        final PreparedStatement statement = EasyMock.createStrictMock(PreparedStatement.class);
+        statement.setLong(3, Long.MIN_VALUE);
+        statement.setLong(4, 1L << 5);
+        statement.setLong(1, 0L);
+        statement.setLong(2, 0L);
+        EasyMock.replay(statement);
+        
+        final WideSetType type = new WideSetType();
+        type.nullSafeSet(statement, EnumSet.of(Wide.W63, Wide.W69), 3);
+        type.nullSafeSet(statement, null, 1);
+        EasyMock.verify(statement);
+    }
+    
+}
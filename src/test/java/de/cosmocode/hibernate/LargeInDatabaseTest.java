@@ -0,0 +1,140 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests {@link LargeInExpression}s against {@link EmbeddedDatabase}s.
+ *
+ * @author Willi Schoenborn
+ */
+@RunWith(Parameterized.class)
+public class LargeInDatabaseTest {
+
+    private static final int ITEMS = 30;
+    
+    private final EmbeddedDatabase database;
+    
+    private SessionFactory factory;
+    
+    public LargeInDatabaseTest(EmbeddedDatabase database) {
+        this.database = database;
+    }
+    
+    /**
+     * Provides the databases.
+     * 
+     * @return all {@link EmbeddedDatabase}s
+     */
+    @Parameters
+    public static Collection<Object[]> parameters() {
+        return EmbeddedDatabase.parameters();
+    }
+    
+    /**
+     * Creates and fills the database.
+     */
+    @Before
+    public void before() {
+        factory = database.open();
+        final Item[] items = new Item[ITEMS];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new Item(i % 2 == 0 ? "b" : "a", "item " + i);
+        }
+        EmbeddedDatabase.save(factory, items);
+    }
+    
+    /**
+     * Drops the database.
+     */
+    @After
+    public void after() {
+        factory.close();
+    }
+    
+    private List<?> ids(Criterion... criterions) {
+        final Session session = factory.openSession();
+        try {
+            final Criteria criteria = session.createCriteria(Item.class);
+            for (Criterion criterion : criterions) {
+                criteria.add(criterion);
+            }
+            return criteria.setProjection(Projections.id()).addOrder(Order.asc("id")).list();
+        } finally {
+            session.close();
+        }
+    }
+    
+    private static List<Long> range(long from, long to, long step) {
+        final List<Long> values = new ArrayList<Long>();
+        for (long value = from; value <= to; value += step) {
+            values.add(Long.valueOf(value));
+        }
+        return values;
+    }
+    
+    /**
+     * Tests small, padded in-lists.
+     */
+    @Test
+    public void small() {
+        Assert.assertEquals(Arrays.asList(1L), ids(CustomRestrictions.in("id", Arrays.asList(1L))));
+        Assert.assertEquals(Arrays.asList(2L, 5L, 7L), 
+            ids(CustomRestrictions.in("id", Arrays.asList(7L, 2L, 5L, 2L))));
+        Assert.assertEquals(Arrays.asList(), ids(CustomRestrictions.in("id", new ArrayList<Long>())));
+    }
+    
+    /**
+     * Tests 5000 values, which are split into several in-lists joined by or.
+     */
+    @Test
+    public void chunked() {
+        Assert.assertEquals(range(2, ITEMS, 2), ids(CustomRestrictions.in("id", range(2, 10000, 2))));
+    }
+    
+    /**
+     * Tests that the padded parameters are bound in the right place among other parameters.
+     */
+    @Test
+    public void otherParameters() {
+        Assert.assertEquals(range(3, ITEMS, 6), ids(
+            Restrictions.eq("owner", "b"),
+            CustomRestrictions.in("id", range(3, 5000, 3)),
+            Restrictions.gt("id", 0L)
+        ));
+    }
+    
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.cosmocode.hibernate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.HibernateException;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.Oracle10gDialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.dialect.SQLServerDialect;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link LargeInExpression}.
+ *
+ * @author Willi Schoenborn
+ */
+public class LargeInExpressionTest {
+
+    private CriteriaQuery query(Dialect dialect) {
+        return MockCriteriaQuery.of(dialect, "id", "this_.id");
+    }
+    
+    private static List<Long> ids(int size) {
+        final List<Long> ids = new ArrayList<Long>(size);
+        for (long i = 0; i < size; i++) {
+            ids.add(Long.valueOf(i));
+        }
+        return ids;
+    }
+    
+    private static int parameters(String sql) {
+        return sql.split("\\?", -1).length - 1;
+    }
+    
+    /**
+     * Tests {@link LargeInExpression#bucket(int, int, int)}.
+     */
+    @Test
+    public void bucket() {
+        Assert.assertEquals(1, LargeInExpression.bucket(1, 1024, 32767));
+        Assert.assertEquals(4, LargeInExpression.bucket(3, 1024, 32767));
+        Assert.assertEquals(4, LargeInExpression.bucket(4, 1024, 32767));
+        Assert.assertEquals(1024, LargeInExpression.bucket(1000, 1024, 32767));
+        Assert.assertEquals(2048, LargeInExpression.bucket(1025, 1024, 32767));
+        Assert.assertEquals(3072, LargeInExpression.bucket(2049, 1024, 32767));
+        Assert.assertEquals(1024, LargeInExpression.bucket(1000, 1024, 2100));
+        Assert.assertEquals(31744, LargeInExpression.bucket(31000, 1024, 32767));
+    }
+    
+    /**
+     * Tests that {@link LargeInExpression#bucket(int, int, int)} doesn't pad if padding
+     * would use up the parameters left for other criteria.
+     */
+    @Test
+    public void bucketUnpadded() {
+        Assert.assertEquals(2090, LargeInExpression.bucket(2090, 1024, 2100));
+        Assert.assertEquals(2001, LargeInExpression.bucket(2001, 1024, 2100));
+        Assert.assertEquals(32000, LargeInExpression.bucket(32000, 1024, 32767));
+        Assert.assertEquals(32767, LargeInExpression.bucket(32767, 1024, 32767));
+    }
+    
+    /**
+     * Tests {@link LargeInExpression#bucket(int, int, int)} using more values than parameters allowed.
+     */
+    @Test(expected = HibernateException.class)
+    public void bucketTooLarge() {
+        LargeInExpression.bucket(32768, 1024, 32767);
+    }
+    
+    /**
+     * Tests padding of small collections, ignoring duplicates.
+     */
+    @Test
+    public void pad() {
+        final CriteriaQuery query = query(new H2Dialect());
+        final Criterion criterion = CustomRestrictions.in("id", Arrays.asList(1L, 2L, 2L, 3L));
+        Assert.assertEquals("this_.id in (?, ?, ?, ?)", criterion.toSqlString(null, query));
+        Assert.assertEquals(4, criterion.getTypedValues(null, query).length);
+    }
+    
+    /**
+     * Tests chunking using Oracle's in-list limit.
+     */
+    @Test
+    public void oracle() {
+        final String sql = CustomRestrictions.in("id", ids(1500)).toSqlString(null, query(new Oracle10gDialect()));
+        Assert.assertTrue(sql.startsWith("(this_.id in (?"));
+        Assert.assertEquals(2, sql.split(" or ").length - 1);
+        Assert.assertEquals(1536, parameters(sql));
+    }
+    
+    /**
+     * Tests that 50k values on MySQL are padded to the next multiple of the in-list size,
+     * staying below MySQL's limit of 65535 parameters.
+     */
+    @Test
+    public void mysql() {
+        final CriteriaQuery query = query(new MySQLDialect());
+        final Criterion criterion = CustomRestrictions.in("id", ids(50000));
+        final String sql = criterion.toSqlString(null, query);
+        Assert.assertEquals(50176, parameters(sql));
+        Assert.assertEquals(48, sql.split(" or ").length - 1);
+        Assert.assertEquals(50176, criterion.getTypedValues(null, query).length);
+    }
+    
+    /**
+     * Tests that 2090 values on SQL Server, with a limit of 2100 parameters,
+     * are not padded, leaving parameters to other criteria.
+     */
+    @Test
+    public void sqlServer() {
+        final CriteriaQuery query = query(new SQLServerDialect());
+        final Criterion criterion = CustomRestrictions.in("id", ids(2090));
+        final String sql = criterion.toSqlString(null, query);
+        Assert.assertEquals(2090, parameters(sql));
+        Assert.assertEquals(2090, criterion.getTypedValues(null, query).length);
+        final String[] chunks = sql.split(" or ");
+        Assert.assertEquals(3, chunks.length);
+        Assert.assertEquals(42, parameters(chunks[2]));
+    }
+    
+    /**
+     * Tests that 50k values are rejected on PostgreSQL, which allows at most 32767 parameters.
+     */
+    @Test(expected = HibernateException.class)
+    public void postgresql() {
+        CustomRestrictions.in("id", ids(50000)).toSqlString(null, query(new PostgreSQLDialect()));
+    }
+    
+    /**
+     * Tests that empty collections render a false expression.
+     */
+    @Test
+    public void empty() {
+        Assert.assertEquals("1=0", CustomRestrictions.in("id", new ArrayList<Long>()).toString());
+    }
+    
+}
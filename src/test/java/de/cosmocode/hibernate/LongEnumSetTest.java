@@ -0,0 +1,87 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link LongEnumSet}.
+ *
+ * @author Willi Schoenborn
+ */
+public class LongEnumSetTest {
+
+    /**
+     * Enum used for testing.
+     *
+     * @author Willi Schoenborn
+     */
+    private static enum Flag {
+        
+        A, B, C, D
+        
+    }
+    
+    /**
+     * Tests decoding and set semantics.
+     */
+    @Test
+    public void of() {
+        final Set<Flag> set = LongEnumSet.of(Flag.class, 5L);
+        Assert.assertEquals(EnumSet.of(Flag.A, Flag.C), set);
+        Assert.assertEquals(set, EnumSet.of(Flag.A, Flag.C));
+        Assert.assertEquals(EnumSet.of(Flag.A, Flag.C).hashCode(), set.hashCode());
+        Assert.assertTrue(set.contains(Flag.C));
+        Assert.assertFalse(set.contains(Flag.B));
+        Assert.assertFalse(set.contains("A"));
+        Assert.assertEquals(2, set.size());
+    }
+    
+    /**
+     * Tests that unknown bits are ignored.
+     */
+    @Test
+    public void unknownBits() {
+        Assert.assertEquals(0xFL, LongEnumSet.of(Flag.class, -1L).getBits());
+    }
+    
+    /**
+     * Tests {@link LongEnumSet#with(Enum)} and {@link LongEnumSet#without(Enum)}.
+     */
+    @Test
+    public void withAndWithout() {
+        final LongEnumSet<Flag> empty = LongEnumSet.copyOf(Flag.class, EnumSet.noneOf(Flag.class));
+        final LongEnumSet<Flag> set = empty.with(Flag.B).with(Flag.D);
+        Assert.assertEquals(EnumSet.of(Flag.B, Flag.D), set);
+        Assert.assertEquals(EnumSet.of(Flag.D), set.without(Flag.B));
+        Assert.assertSame(set, set.without(Flag.A));
+        Assert.assertTrue(empty.isEmpty());
+    }
+    
+    /**
+     * Tests that mutation is not supported.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutable() {
+        LongEnumSet.of(Flag.class, 1L).add(Flag.B);
+    }
+    
+}
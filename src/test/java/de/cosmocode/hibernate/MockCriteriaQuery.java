@@ -0,0 +1,63 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import org.easymock.EasyMock;
+import org.hibernate.Criteria;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.SessionFactoryImplementor;
+
+/**
+ * Creates mocked {@link CriteriaQuery}s which resolve a single property
+ * to a fixed set of columns using a given {@link Dialect}.
+ *
+ * @author Willi Schoenborn
+ */
+final class MockCriteriaQuery {
+
+    private MockCriteriaQuery() {
+        
+    }
+    
+    /**
+     * Creates a nice mock of a {@link CriteriaQuery} whose factory uses the given dialect.
+     * 
+     * @param dialect the dialect of the session factory
+     * @param property the property name
+     * @param columns the columns the property maps to
+     * @return a new, replayed {@link CriteriaQuery} mock
+     */
+    public static CriteriaQuery of(Dialect dialect, String property, String... columns) {
+        final SessionFactoryImplementor factory = EasyMock.createNiceMock(SessionFactoryImplementor.class);
+        EasyMock.expect(factory.getDialect()).andReturn(dialect).anyTimes();
+        EasyMock.replay(factory);
+        final CriteriaQuery query = EasyMock.createNiceMock(CriteriaQuery.class);
+        EasyMock.expect(query.getFactory()).andReturn(factory).anyTimes();
+        EasyMock.expect(query.getColumnsUsingProjection(
+            EasyMock.<Criteria>anyObject(), EasyMock.eq(property))).andReturn(columns).anyTimes();
+        EasyMock.expect(query.getColumns(
+            EasyMock.eq(property), EasyMock.<Criteria>anyObject())).andReturn(columns).anyTimes();
+        if (columns.length == 1) {
+            EasyMock.expect(query.getColumn(
+                EasyMock.<Criteria>anyObject(), EasyMock.eq(property))).andReturn(columns[0]).anyTimes();
+        }
+        EasyMock.replay(query);
+        return query;
+    }
+    
+}
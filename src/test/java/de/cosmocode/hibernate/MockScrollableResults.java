@@ -34,7 +34,8 @@ import com.google.common.base.Preconditions;
 
 /**
  * Mock implementation of the {@link ScrollableResults} which uses
- * an underlying list.
+ * an underlying list. Elements being {@code Object[]}s are treated
+ * as multi-column rows.
  *
  * @author Willi Schoenborn
  */
@@ -44,6 +45,8 @@ final class MockScrollableResults implements ScrollableResults {
     
     private int index = -1;
     
+    private volatile boolean closed;
+    
     public <T> MockScrollableResults(List<T> list) {
         this.list = Preconditions.checkNotNull(list, "List");
     }
@@ -60,7 +63,11 @@ final class MockScrollableResults implements ScrollableResults {
 
     @Override
     public void close() throws HibernateException {
-        throw new UnsupportedOperationException();
+        closed = true;
+    }
+    
+    public boolean isClosed() {
+        return closed;
     }
 
     @Override
@@ -71,7 +78,8 @@ final class MockScrollableResults implements ScrollableResults {
 
     @Override
     public Object get(int i) throws HibernateException {
-        return list.get(index);
+        final Object row = list.get(index);
+        return row instanceof Object[] ? Object[].class.cast(row)[i] : row;
     }
 
     @Override
@@ -121,7 +129,8 @@ final class MockScrollableResults implements ScrollableResults {
 
     @Override
     public Object[] get() throws HibernateException {
-        throw new UnsupportedOperationException();
+        final Object row = list.get(index);
+        return row instanceof Object[] ? Object[].class.cast(row) : new Object[] {row};
     }
 
     @Override
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.hibernate.ScrollMode;
+import org.hibernate.Transaction;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Order;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.impl.CriteriaImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link PartitionedScroll} using mocked sessions.
+ *
+ * @author Willi Schoenborn
+ */
+public class PartitionedScrollTest {
+
+    /**
+     * The views of a session used by {@link DetachedCriteria} and {@link PartitionedScroll}.
+     *
+     * @author Willi Schoenborn
+     */
+    private interface MockSession extends org.hibernate.classic.Session, SessionImplementor {
+        
+    }
+    
+    private SessionFactoryImplementor factory;
+    
+    private MockSession session;
+    
+    private Transaction transaction;
+    
+    private final Capture<CriteriaImpl> bounds = new Capture<CriteriaImpl>();
+    
+    /**
+     * Mocks a session factory whose sessions return 1 and 100 as min and max
+     * and the given rows for every partition.
+     */
+    @Before
+    public void setUp() {
+        factory = EasyMock.createNiceMock(SessionFactoryImplementor.class);
+        session = EasyMock.createNiceMock(MockSession.class);
+        transaction = EasyMock.createMock(Transaction.class);
+        
+        EasyMock.expect(factory.getDialect()).andReturn(new H2Dialect()).anyTimes();
+        EasyMock.expect(factory.openSession()).andReturn(session).anyTimes();
+        EasyMock.expect(session.getSessionFactory()).andReturn(factory).anyTimes();
+        EasyMock.expect(session.beginTransaction()).andReturn(transaction).anyTimes();
+        EasyMock.expect(session.getTransaction()).andReturn(transaction).anyTimes();
+        final Object[] minMax = {Long.valueOf(1L), Long.valueOf(100L)};
+        EasyMock.expect(session.list(EasyMock.capture(bounds))).andReturn(
+            Collections.singletonList(minMax)).once();
+    }
+    
+    private void expectPartitions(int partitions) {
+        for (int i = 0; i < partitions; i++) {
+            EasyMock.expect(session.scroll(EasyMock.<CriteriaImpl>anyObject(), EasyMock.eq(ScrollMode.FORWARD_ONLY))).
+                andReturn(new MockScrollableResults(Arrays.asList(Long.valueOf(i))));
+        }
+    }
+    
+    /**
+     * Tests that every partition is processed and committed and that the bounds are
+     * selected without the orders of the given criteria.
+     * 
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void run() throws InterruptedException {
+        expectPartitions(2);
+        transaction.commit();
+        EasyMock.expectLastCall().times(2);
+        EasyMock.replay(factory, session, transaction);
+        
+        final DetachedCriteria criteria = DetachedCriteria.forClass(Object.class).addOrder(Order.asc("name"));
+        final List<Long> processed = Collections.synchronizedList(new ArrayList<Long>());
+        new PartitionedScroll<Long>(factory, criteria, "id", 2).run(1, new PartitionCallback<Long>() {
+            
+            @Override
+            public void process(int partition, Iterator<Long> iterator) {
+                while (iterator.hasNext()) {
+                    processed.add(iterator.next());
+                }
+            }
+            
+        });
+        
+        EasyMock.verify(transaction);
+        Assert.assertFalse(bounds.getValue().iterateOrderings().hasNext());
+        Collections.sort(processed);
+        Assert.assertEquals(Arrays.asList(0L, 1L), processed);
+    }
+    
+    /**
+     * Tests that errors thrown by the callback roll back the transaction.
+     * 
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void error() throws InterruptedException {
+        final AssertionError error = new AssertionError();
+        expectPartitions(1);
+        EasyMock.expect(transaction.isActive()).andReturn(true);
+        transaction.rollback();
+        EasyMock.replay(factory, session, transaction);
+        
+        try {
+            new PartitionedScroll<Long>(factory, DetachedCriteria.forClass(Object.class), "id", 1).run(1, 
+                new PartitionCallback<Long>() {
+                    
+                    @Override
+                    public void process(int partition, Iterator<Long> iterator) {
+                        throw error;
+                    }
+                    
+                });
+            Assert.fail("Expected " + error);
+        } catch (AssertionError e) {
+            Assert.assertSame(error, e);
+        }
+        
+        EasyMock.verify(transaction);
+    }
+    
+}
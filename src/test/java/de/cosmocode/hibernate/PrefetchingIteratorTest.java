@@ -0,0 +1,198 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hibernate.HibernateException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests {@link PrefetchingIterator} using {@link MockScrollableResults}.
+ *
+ * @author Willi Schoenborn
+ */
+public class PrefetchingIteratorTest {
+
+    private List<Integer> range(int size) {
+        final List<Integer> list = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+    
+    /**
+     * Tests draining all elements, including a trailing partial batch.
+     */
+    @Test
+    public void drain() {
+        final MockScrollableResults results = new MockScrollableResults(range(25));
+        final PrefetchingIterator<Integer> iterator = new PrefetchingIterator<Integer>(results, 10, 2);
+        Assert.assertEquals(range(25), Lists.newArrayList(iterator));
+        Assert.assertFalse(iterator.hasNext());
+        Assert.assertTrue(results.isClosed());
+    }
+    
+    /**
+     * Tests an empty result.
+     */
+    @Test
+    public void empty() {
+        final MockScrollableResults results = new MockScrollableResults(new ArrayList<Integer>());
+        final Iterator<Integer> iterator = new PrefetchingIterator<Integer>(results, 10, 2);
+        Assert.assertFalse(iterator.hasNext());
+        Assert.assertTrue(results.isClosed());
+    }
+    
+    /**
+     * Tests that errors thrown while reading are rethrown to the consumer as they are.
+     */
+    @Test
+    public void error() {
+        final AssertionError error = new AssertionError("broken row");
+        final MockScrollableResults results = new MockScrollableResults(new AbstractList<Integer>() {
+            
+            @Override
+            public Integer get(int index) {
+                if (index == 15) throw error;
+                return index;
+            }
+            
+            @Override
+            public int size() {
+                return 100;
+            }
+            
+        });
+        final Iterator<Integer> iterator = new PrefetchingIterator<Integer>(results, 10, 1);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(Integer.valueOf(i), iterator.next());
+        }
+        try {
+            iterator.next();
+            Assert.fail("Expected " + error);
+        } catch (AssertionError e) {
+            Assert.assertSame(error, e);
+        }
+        Assert.assertTrue(results.isClosed());
+    }
+    
+    /**
+     * Tests that runtime exceptions are wrapped into a {@link HibernateException}.
+     */
+    @Test
+    public void exception() {
+        final IllegalStateException exception = new IllegalStateException();
+        final MockScrollableResults results = new MockScrollableResults(new AbstractList<Integer>() {
+            
+            @Override
+            public Integer get(int index) {
+                throw exception;
+            }
+            
+            @Override
+            public int size() {
+                return 1;
+            }
+            
+        });
+        final Iterator<Integer> iterator = new PrefetchingIterator<Integer>(results, 10, 1);
+        try {
+            iterator.hasNext();
+            Assert.fail("Expected " + HibernateException.class);
+        } catch (HibernateException e) {
+            Assert.assertSame(exception, e.getCause());
+        }
+    }
+    
+    /**
+     * Tests that closing early stops the background thread and closes the results
+     * before {@link PrefetchingIterator#close()} returns.
+     */
+    @Test
+    public void closeEarly() {
+        final MockScrollableResults results = new MockScrollableResults(range(10000));
+        final PrefetchingIterator<Integer> iterator = new PrefetchingIterator<Integer>(results, 1, 1);
+        Assert.assertEquals(Integer.valueOf(0), iterator.next());
+        iterator.close();
+        Assert.assertTrue(results.isClosed());
+        Assert.assertFalse(iterator.hasNext());
+    }
+    
+    /**
+     * Tests that closing from another thread wakes up a consumer waiting for the next batch.
+     * 
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void closeConcurrently() throws InterruptedException {
+        final CountDownLatch never = new CountDownLatch(1);
+        final MockScrollableResults results = new MockScrollableResults(new AbstractList<Integer>() {
+            
+            @Override
+            public Integer get(int index) {
+                if (index == 0) return index;
+                try {
+                    never.await();
+                    return index;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+            
+            @Override
+            public int size() {
+                return 10;
+            }
+            
+        });
+        final PrefetchingIterator<Integer> iterator = new PrefetchingIterator<Integer>(results, 1, 1);
+        Assert.assertEquals(Integer.valueOf(0), iterator.next());
+        
+        final AtomicReference<Boolean> hasNext = new AtomicReference<Boolean>();
+        final Thread consumer = new Thread(new Runnable() {
+            
+            @Override
+            public void run() {
+                hasNext.set(iterator.hasNext());
+            }
+            
+        });
+        consumer.setDaemon(true);
+        consumer.start();
+        while (consumer.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+        
+        iterator.close();
+        consumer.join(5000);
+        Assert.assertFalse("consumer still blocked", consumer.isAlive());
+        Assert.assertEquals(Boolean.FALSE, hasNext.get());
+        Assert.assertTrue(results.isClosed());
+    }
+    
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Projections;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Tests {@link PrefixRangeExpression} against {@link EmbeddedDatabase}s.
+ *
+ * @author Willi Schoenborn
+ */
+@RunWith(Parameterized.class)
+public class PrefixRangeDatabaseTest {
+
+    private final EmbeddedDatabase database;
+    
+    private SessionFactory factory;
+    
+    public PrefixRangeDatabaseTest(EmbeddedDatabase database) {
+        this.database = database;
+    }
+    
+    /**
+     * Provides the databases.
+     * 
+     * @return all {@link EmbeddedDatabase}s
+     */
+    @Parameters
+    public static Collection<Object[]> parameters() {
+        return EmbeddedDatabase.parameters();
+    }
+    
+    /**
+     * Creates and fills the database.
+     */
+    @Before
+    public void before() {
+        factory = database.open();
+        EmbeddedDatabase.save(factory, 
+            new Item("a", "Apple"),
+            new Item("a", "apricot"),
+            new Item("a", "Apricot"),
+            new Item("b", "100% juice"),
+            new Item("b", "100_juice"),
+            new Item("b", "1000 juices"),
+            new Item("c", "a!b"),
+            new Item("c", "ab"),
+            new Item("d", "z\uFFFF"),
+            new Item("d", "z\uFFFFy"),
+            new Item("d", "za"),
+            new Item("d", "z{")
+        );
+    }
+    
+    /**
+     * Drops the database.
+     */
+    @After
+    public void after() {
+        factory.close();
+    }
+    
+    private Set<?> startsWith(String prefix) {
+        final Session session = factory.openSession();
+        try {
+            final List<?> names = session.createCriteria(Item.class).
+                add(CustomRestrictions.startsWith("name", prefix)).
+                setProjection(Projections.property("name")).
+                list();
+            return ImmutableSet.copyOf(names);
+        } finally {
+            session.close();
+        }
+    }
+    
+    /**
+     * Tests that prefixes match case sensitively.
+     */
+    @Test
+    public void caseSensitive() {
+        Assert.assertEquals(ImmutableSet.of("Apple", "Apricot"), startsWith("A"));
+        Assert.assertEquals(ImmutableSet.of("Apricot"), startsWith("Apr"));
+        Assert.assertEquals(ImmutableSet.of("apricot"), startsWith("ap"));
+    }
+    
+    /**
+     * Tests that wildcards and the escape character match literally.
+     */
+    @Test
+    public void wildcards() {
+        Assert.assertEquals(ImmutableSet.of("100% juice"), startsWith("100%"));
+        Assert.assertEquals(ImmutableSet.of("100_juice"), startsWith("100_"));
+        Assert.assertEquals(ImmutableSet.of("a!b"), startsWith("a!"));
+        Assert.assertEquals(ImmutableSet.of("a!b", "ab", "apricot"), startsWith("a"));
+    }
+    
+    /**
+     * Tests prefixes whose last character can't be incremented.
+     */
+    @Test
+    public void successor() {
+        Assert.assertEquals(ImmutableSet.of("z\uFFFF", "z\uFFFFy"), startsWith("z\uFFFF"));
+        Assert.assertEquals(ImmutableSet.of("z\uFFFF", "z\uFFFFy", "za", "z{"), startsWith("z"));
+    }
+    
+}
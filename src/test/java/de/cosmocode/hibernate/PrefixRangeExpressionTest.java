@@ -0,0 +1,77 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.cosmocode.hibernate;
+
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link PrefixRangeExpression}.
+ *
+ * @author Willi Schoenborn
+ */
+public class PrefixRangeExpressionTest {
+
+    /**
+     * Tests incrementing the last char.
+     */
+    @Test
+    public void simple() {
+        Assert.assertEquals("abd", PrefixRangeExpression.successor("abc"));
+        Assert.assertEquals("ab{", PrefixRangeExpression.successor("abz"));
+    }
+    
+    /**
+     * Tests that increments skip the surrogate range.
+     */
+    @Test
+    public void surrogates() {
+        Assert.assertEquals("a\uE000", PrefixRangeExpression.successor("a\uD7FF"));
+        final String clef = new String(Character.toChars(0x1D11E));
+        final String next = new String(Character.toChars(0x1D11F));
+        Assert.assertEquals("a" + next, PrefixRangeExpression.successor("a" + clef));
+    }
+    
+    /**
+     * Tests that maximal code points are removed.
+     */
+    @Test
+    public void carry() {
+        final String max = new String(Character.toChars(Character.MAX_CODE_POINT));
+        Assert.assertEquals("b", PrefixRangeExpression.successor("a" + max + "\uFFFF"));
+        Assert.assertNull(PrefixRangeExpression.successor(max + "\uFFFF"));
+    }
+    
+    /**
+     * Tests that case insensitive prefixes are lowercased independent of the default locale.
+     */
+    @Test
+    public void locale() {
+        final Locale locale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            Assert.assertEquals("name starts with title", 
+                CustomRestrictions.startsWithIgnoreCase("name", "TITLE").toString());
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+    
+}
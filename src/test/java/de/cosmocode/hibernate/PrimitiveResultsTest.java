@@ -0,0 +1,111 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hibernate.HibernateException;
+import org.hibernate.ScrollableResults;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link PrimitiveResults} using {@link MockScrollableResults}.
+ *
+ * @author Willi Schoenborn
+ */
+public class PrimitiveResultsTest {
+
+    /**
+     * Tests {@link PrimitiveResults#fill(ScrollableResults, long[])}.
+     */
+    @Test
+    public void fill() {
+        final ScrollableResults results = new MockScrollableResults(Arrays.asList(1L, 2L, 3L, 4L, 5L));
+        final long[] chunk = new long[2];
+        
+        Assert.assertEquals(2, PrimitiveResults.fill(results, chunk));
+        Assert.assertArrayEquals(new long[] {1L, 2L}, chunk);
+        Assert.assertEquals(2, PrimitiveResults.fill(results, chunk));
+        Assert.assertArrayEquals(new long[] {3L, 4L}, chunk);
+        Assert.assertEquals(1, PrimitiveResults.fill(results, chunk));
+        Assert.assertEquals(5L, chunk[0]);
+        Assert.assertEquals(0, PrimitiveResults.fill(results, chunk));
+    }
+    
+    /**
+     * Tests {@link PrimitiveResults#toLongArray(ScrollableResults)} using integer values.
+     */
+    @Test
+    public void toLongArray() {
+        final ScrollableResults results = new MockScrollableResults(Arrays.asList(7, 8, 9));
+        Assert.assertArrayEquals(new long[] {7L, 8L, 9L}, PrimitiveResults.toLongArray(results));
+    }
+    
+    /**
+     * Tests {@link PrimitiveResults#fill(ScrollableResults, int[])} using long values.
+     */
+    @Test
+    public void fillInt() {
+        final ScrollableResults results = new MockScrollableResults(Arrays.asList(1L, 2L, 3L));
+        final int[] chunk = new int[2];
+        
+        Assert.assertEquals(2, PrimitiveResults.fill(results, chunk));
+        Assert.assertArrayEquals(new int[] {1, 2}, chunk);
+        Assert.assertEquals(1, PrimitiveResults.fill(results, chunk));
+        Assert.assertEquals(3, chunk[0]);
+        Assert.assertEquals(0, PrimitiveResults.fill(results, chunk));
+    }
+    
+    /**
+     * Tests that {@link PrimitiveResults#fill(ScrollableResults, int[])} rejects
+     * values exceeding the int range instead of truncating them.
+     */
+    @Test(expected = HibernateException.class)
+    public void fillIntOverflow() {
+        final ScrollableResults results = new MockScrollableResults(Arrays.asList(1L, Integer.MAX_VALUE + 1L));
+        PrimitiveResults.fill(results, new int[2]);
+    }
+    
+    /**
+     * Tests {@link PrimitiveResults#toIntArray(ScrollableResults)} with more values
+     * than the initial capacity.
+     */
+    @Test
+    public void toIntArray() {
+        final List<Long> values = new ArrayList<Long>();
+        for (long i = 0; i < 3000; i++) {
+            values.add(Long.valueOf(Integer.MIN_VALUE + i));
+        }
+        final int[] array = PrimitiveResults.toIntArray(new MockScrollableResults(values));
+        Assert.assertEquals(3000, array.length);
+        Assert.assertEquals(Integer.MIN_VALUE, array[0]);
+        Assert.assertEquals(Integer.MIN_VALUE + 2999, array[2999]);
+    }
+    
+    /**
+     * Tests that {@link PrimitiveResults#toIntArray(ScrollableResults)} rejects
+     * values exceeding the int range instead of truncating them.
+     */
+    @Test(expected = HibernateException.class)
+    public void toIntArrayOverflow() {
+        PrimitiveResults.toIntArray(new MockScrollableResults(Arrays.asList(Integer.MIN_VALUE - 1L)));
+    }
+    
+}
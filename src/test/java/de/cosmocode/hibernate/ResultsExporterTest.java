@@ -0,0 +1,148 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link ResultsExporter} and the escaping of the {@link ExportFormat}s.
+ *
+ * @author Willi Schoenborn
+ */
+public class ResultsExporterTest {
+
+    /**
+     * Enum used for testing.
+     *
+     * @author Willi Schoenborn
+     */
+    private static enum Flag {
+        
+        A, B, C
+        
+    }
+    
+    private String export(ResultsExporter exporter, Object[]... rows) throws IOException {
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final MockScrollableResults results = new MockScrollableResults(Arrays.asList(rows));
+        Assert.assertEquals(rows.length, exporter.export(results, stream));
+        return new String(stream.toByteArray(), "UTF-8");
+    }
+    
+    /**
+     * Tests quoting of delimiters, quotes and line breaks in csv.
+     * 
+     * @throws IOException should not happen
+     */
+    @Test
+    public void csvQuoting() throws IOException {
+        final ResultsExporter exporter = new ResultsExporter(ExportFormat.CSV, "id", "value");
+        Assert.assertEquals(
+            "id,value\r\n" +
+            "1,plain\r\n" +
+            "2,\"a,b\"\r\n" +
+            "3,\"say \"\"hi\"\"\"\r\n" +
+            "4,\"line\nbreak\"\r\n" +
+            "5,\"carriage\rreturn\"\r\n" +
+            "6,\r\n" +
+            "7,\u00e4\u00f6\u00fc \u20ac\r\n",
+            export(exporter,
+                new Object[] {1L, "plain"},
+                new Object[] {2L, "a,b"},
+                new Object[] {3L, "say \"hi\""},
+                new Object[] {4L, "line\nbreak"},
+                new Object[] {5L, "carriage\rreturn"},
+                new Object[] {6L, null},
+                new Object[] {7L, "\u00e4\u00f6\u00fc \u20ac"}));
+    }
+    
+    /**
+     * Tests that quoted header names and collections are rendered as single fields.
+     * 
+     * @throws IOException should not happen
+     */
+    @Test
+    public void csvCollections() throws IOException {
+        final ResultsExporter exporter = 
+            new ResultsExporter(ExportFormat.CSV, "flags", "raw, flags").decode(1, Flag.class);
+        Assert.assertEquals(
+            "flags,\"raw, flags\"\r\n" +
+            "A|C,B|C\r\n",
+            export(exporter, new Object[] {EnumSet.of(Flag.A, Flag.C), 6L}));
+    }
+    
+    /**
+     * Tests escaping of quotes, backslashes, line breaks and control characters in json.
+     * 
+     * @throws IOException should not happen
+     */
+    @Test
+    public void jsonEscaping() throws IOException {
+        final ResultsExporter exporter = new ResultsExporter(ExportFormat.NDJSON, "a\"b", "value");
+        Assert.assertEquals(
+            "{\"a\\\"b\":1,\"value\":\"say \\\"hi\\\"\"}\n" +
+            "{\"a\\\"b\":2,\"value\":\"back\\\\slash\"}\n" +
+            "{\"a\\\"b\":3,\"value\":\"line\\nbreak\\r\\ttab\"}\n" +
+            "{\"a\\\"b\":4,\"value\":\"bell\\u0007nul\\u0000\"}\n" +
+            "{\"a\\\"b\":5,\"value\":\"\u00e4\u00f6\u00fc \u20ac,\"}\n" +
+            "{\"a\\\"b\":6,\"value\":null}\n",
+            export(exporter,
+                new Object[] {1L, "say \"hi\""},
+                new Object[] {2L, "back\\slash"},
+                new Object[] {3L, "line\nbreak\r\ttab"},
+                new Object[] {4L, "bell\u0007nul\u0000"},
+                new Object[] {5L, "\u00e4\u00f6\u00fc \u20ac,"},
+                new Object[] {6L, null}));
+    }
+    
+    /**
+     * Tests json numbers, booleans, non-finite doubles and enum collections.
+     * 
+     * @throws IOException should not happen
+     */
+    @Test
+    public void jsonValues() throws IOException {
+        final ResultsExporter exporter = new ResultsExporter(ExportFormat.NDJSON, "n", "b", "d", "flags");
+        Assert.assertEquals(
+            "{\"n\":2.5,\"b\":true,\"d\":\"NaN\",\"flags\":[\"A\",\"B\"]}\n",
+            export(exporter, new Object[] {2.5, true, Double.NaN, EnumSet.of(Flag.A, Flag.B)}));
+    }
+    
+    /**
+     * Tests that sql dates are written as dates and other dates as utc timestamps.
+     * 
+     * @throws IOException should not happen
+     */
+    @Test
+    public void dates() throws IOException {
+        final ResultsExporter exporter = new ResultsExporter(ExportFormat.CSV, "day", "time", "stamp");
+        Assert.assertEquals(
+            "day,time,stamp\r\n" +
+            "2010-10-17,1970-01-01T00:00:00.000Z,2010-10-17T10:06:40.000Z\r\n",
+            export(exporter, new Object[] {
+                java.sql.Date.valueOf("2010-10-17"), new Date(0L), new java.sql.Timestamp(1287310000000L)
+            }));
+    }
+    
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.cosmocode.hibernate;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Tests {@link ReverseIlikeMatcher}.
+ *
+ * @author Willi Schoenborn
+ */
+public class ReverseIlikeMatcherTest {
+
+    private ReverseIlikeMatcher matcher;
+    
+    /**
+     * Fills the matcher with overlapping keywords.
+     */
+    @Before
+    public void setUp() {
+        matcher = new ReverseIlikeMatcher("Keyword", "value");
+        matcher.put(1L, "he");
+        matcher.put(2L, "She");
+        matcher.put(3L, "his");
+        matcher.put(4L, "hers");
+        matcher.put(5L, "ushers");
+    }
+    
+    private static Set<Serializable> ids(Long... ids) {
+        return ImmutableSet.<Serializable>copyOf(ids);
+    }
+    
+    /**
+     * Tests {@link PropertyMatchMode#ANYWHERE}, including keywords being suffixes of other keywords.
+     */
+    @Test
+    public void anywhere() {
+        Assert.assertEquals(ids(1L, 2L, 4L, 5L), matcher.match("USHERS"));
+        Assert.assertEquals(ids(3L), matcher.match("this"));
+        Assert.assertEquals(Collections.emptySet(), matcher.match("abc"));
+    }
+    
+    /**
+     * Tests {@link PropertyMatchMode#START}.
+     */
+    @Test
+    public void start() {
+        Assert.assertEquals(ids(1L, 4L), matcher.match("hersh", PropertyMatchMode.START));
+    }
+    
+    /**
+     * Tests {@link PropertyMatchMode#END}.
+     */
+    @Test
+    public void end() {
+        Assert.assertEquals(ids(1L, 2L), matcher.match("ashe", PropertyMatchMode.END));
+    }
+    
+    /**
+     * Tests {@link PropertyMatchMode#EXACT}.
+     */
+    @Test
+    public void exact() {
+        Assert.assertEquals(ids(2L), matcher.match("she", PropertyMatchMode.EXACT));
+        Assert.assertEquals(Collections.emptySet(), matcher.match("shes", PropertyMatchMode.EXACT));
+    }
+    
+    /**
+     * Tests that changes are visible to subsequent matches.
+     */
+    @Test
+    public void refresh() {
+        Assert.assertEquals(ids(1L, 2L), matcher.match("she"));
+        matcher.remove(2L);
+        matcher.put(1L, "sh");
+        Assert.assertEquals(ids(1L), matcher.match("she"));
+    }
+    
+    /**
+     * Tests that empty values match like {@code '%' || '' || '%'} does in the database.
+     */
+    @Test
+    public void emptyValue() {
+        matcher.put(6L, "");
+        Assert.assertEquals(ids(6L), matcher.match("abc"));
+        Assert.assertEquals(ids(6L), matcher.match(""));
+        Assert.assertEquals(ids(6L), matcher.match("abc", PropertyMatchMode.START));
+        Assert.assertEquals(ids(6L), matcher.match("abc", PropertyMatchMode.END));
+        Assert.assertEquals(Collections.emptySet(), matcher.match("abc", PropertyMatchMode.EXACT));
+        Assert.assertEquals(ids(6L), matcher.match("", PropertyMatchMode.EXACT));
+    }
+    
+    /**
+     * Tests that case folding does not depend on the default locale.
+     */
+    @Test
+    public void locale() {
+        final Locale locale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            matcher.put(6L, "TITLE");
+            Assert.assertEquals(ids(3L, 6L), matcher.match("this title"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+    
+}
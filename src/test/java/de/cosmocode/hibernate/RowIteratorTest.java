@@ -0,0 +1,112 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.NoSuchElementException;
+
+import org.hibernate.HibernateException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link RowIterator} and {@link ScrollableRow} using {@link MockScrollableResults}.
+ *
+ * @author Willi Schoenborn
+ */
+public class RowIteratorTest {
+
+    private static final Date DATE = new Date(1287310000000L);
+    
+    private RowIterator unit() {
+        return new RowIterator(new MockScrollableResults(Arrays.asList(
+            new Object[] {Long.valueOf(1L), "a", Boolean.TRUE, DATE},
+            new Object[] {Integer.valueOf(2), null, Boolean.FALSE, null},
+            new Object[] {Double.valueOf(3.5), "c", Boolean.TRUE, DATE}
+        )));
+    }
+    
+    /**
+     * Tests iterating and the typed getters.
+     */
+    @Test
+    public void iterate() {
+        final RowIterator iterator = unit();
+        
+        Assert.assertTrue(iterator.hasNext());
+        final ScrollableRow first = iterator.next();
+        Assert.assertEquals(1L, first.getLong(0));
+        Assert.assertEquals("a", first.getString(1));
+        Assert.assertTrue(first.getBoolean(2));
+        Assert.assertEquals(DATE, first.getDate(3));
+        
+        final ScrollableRow second = iterator.next();
+        Assert.assertSame(first, second);
+        Assert.assertEquals(2, second.getInt(0));
+        Assert.assertTrue(second.isNull(1));
+        Assert.assertNull(second.getString(1));
+        Assert.assertFalse(second.getBoolean(2));
+        Assert.assertNull(second.getDate(3));
+        
+        final ScrollableRow third = iterator.next();
+        Assert.assertEquals(3.5, third.getDouble(0), 0.0);
+        Assert.assertArrayEquals(new Object[] {Double.valueOf(3.5), "c"}, third.copyTo(new Object[2]));
+        
+        Assert.assertFalse(iterator.hasNext());
+    }
+    
+    /**
+     * Tests that primitive getters reject nulls.
+     */
+    @Test(expected = HibernateException.class)
+    public void primitiveNull() {
+        final RowIterator iterator = unit();
+        iterator.next();
+        iterator.next().getLong(1);
+    }
+    
+    /**
+     * Tests calling {@link RowIterator#next()} on exhausted results.
+     */
+    @Test(expected = NoSuchElementException.class)
+    public void exhausted() {
+        final RowIterator iterator = new RowIterator(new MockScrollableResults(Arrays.asList()));
+        Assert.assertFalse(iterator.hasNext());
+        iterator.next();
+    }
+    
+    /**
+     * Tests {@link RowIterator#fill(Object[][])} with a partially filled last chunk.
+     */
+    @Test
+    public void fill() {
+        final RowIterator iterator = unit();
+        final Object[][] columns = new Object[2][2];
+        
+        Assert.assertEquals(2, iterator.fill(columns));
+        Assert.assertArrayEquals(new Object[] {Long.valueOf(1L), Integer.valueOf(2)}, columns[0]);
+        Assert.assertArrayEquals(new Object[] {"a", null}, columns[1]);
+        
+        Assert.assertEquals(1, iterator.fill(columns));
+        Assert.assertEquals(Double.valueOf(3.5), columns[0][0]);
+        Assert.assertEquals("c", columns[1][0]);
+        
+        Assert.assertEquals(0, iterator.fill(columns));
+    }
+    
+}
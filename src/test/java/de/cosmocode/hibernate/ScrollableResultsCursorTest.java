@@ -0,0 +1,144 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link ScrollableResultsCursor}.
+ *
+ * @author Willi Schoenborn
+ */
+public class ScrollableResultsCursorTest {
+
+    private static List<Integer> range(int size) {
+        final List<Integer> list = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+    
+    /**
+     * Tests batches ending exactly at the end of the results.
+     */
+    @Test
+    public void boundary() {
+        final MockScrollableResults results = new MockScrollableResults(range(4));
+        final ScrollableResultsCursor<Integer> cursor = new ScrollableResultsCursor<Integer>(results);
+        
+        Assert.assertEquals(Arrays.asList(0, 1), cursor.nextBatch(2));
+        Assert.assertEquals(Arrays.asList(2, 3), cursor.nextBatch(2));
+        Assert.assertFalse(results.isClosed());
+        Assert.assertEquals(Collections.emptyList(), cursor.nextBatch(2));
+        Assert.assertTrue(results.isClosed());
+        Assert.assertTrue(cursor.isClosed());
+        Assert.assertEquals(Collections.emptyList(), cursor.nextBatch(2));
+    }
+    
+    /**
+     * Tests that a partial last batch closes the results.
+     */
+    @Test
+    public void partial() {
+        final MockScrollableResults results = new MockScrollableResults(range(5));
+        final ScrollableResultsCursor<Integer> cursor = new ScrollableResultsCursor<Integer>(results);
+        
+        Assert.assertEquals(Arrays.asList(0, 1, 2), cursor.nextBatch(3));
+        Assert.assertEquals(Arrays.asList(3, 4), cursor.nextBatch(3));
+        Assert.assertTrue(results.isClosed());
+        Assert.assertEquals(Collections.emptyList(), cursor.nextBatch(3));
+    }
+    
+    /**
+     * Tests that empty results yield an empty batch and get closed.
+     */
+    @Test
+    public void empty() {
+        final MockScrollableResults results = new MockScrollableResults(Collections.emptyList());
+        final ScrollableResultsCursor<Object> cursor = new ScrollableResultsCursor<Object>(results);
+        
+        Assert.assertEquals(Collections.emptyList(), cursor.nextBatch(10));
+        Assert.assertTrue(results.isClosed());
+        Assert.assertFalse(cursor.hasNext());
+    }
+    
+    /**
+     * Tests that non-positive sizes are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void zero() {
+        new ScrollableResultsCursor<Integer>(new MockScrollableResults(range(1))).nextBatch(0);
+    }
+    
+    /**
+     * Tests that concurrent workers receive every element exactly once.
+     * 
+     * @throws Exception should not happen
+     */
+    @Test
+    public void concurrent() throws Exception {
+        final int size = 10000;
+        final ScrollableResultsCursor<Integer> cursor = 
+            new ScrollableResultsCursor<Integer>(new MockScrollableResults(range(size)));
+        final Set<Integer> seen = new ConcurrentSkipListSet<Integer>();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        
+        try {
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    
+                    @Override
+                    public Integer call() {
+                        int count = 0;
+                        List<Integer> batch;
+                        while (!(batch = cursor.nextBatch(7)).isEmpty()) {
+                            seen.addAll(batch);
+                            count += batch.size();
+                        }
+                        return count;
+                    }
+                    
+                }));
+            }
+            
+            int total = 0;
+            for (Future<Integer> future : futures) {
+                total += future.get().intValue();
+            }
+            Assert.assertEquals(size, total);
+            Assert.assertEquals(size, seen.size());
+            Assert.assertTrue(cursor.isClosed());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.hibernate;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.hibernate.Session;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link SessionClearingIterator}.
+ *
+ * @author Willi Schoenborn
+ */
+public class SessionClearingIteratorTest {
+
+    /**
+     * Tests that the session is being flushed and cleared at every batch boundary.
+     */
+    @Test
+    public void test() {
+        final Session session = EasyMock.createStrictMock(Session.class);
+        final BatchListener listener = EasyMock.createStrictMock(BatchListener.class);
+        session.flush();
+        listener.onBatch(session, 2);
+        session.clear();
+        session.flush();
+        listener.onBatch(session, 3);
+        session.clear();
+        EasyMock.replay(session, listener);
+        
+        final Iterator<String> iterator = new SessionClearingIterator<String>(
+            Arrays.asList("a", "b", "c").iterator(), session, 2, true, listener
+        );
+        
+        Assert.assertTrue(iterator.hasNext());
+        Assert.assertEquals("a", iterator.next());
+        Assert.assertTrue(iterator.hasNext());
+        Assert.assertEquals("b", iterator.next());
+        Assert.assertTrue(iterator.hasNext());
+        Assert.assertEquals("c", iterator.next());
+        Assert.assertFalse(iterator.hasNext());
+        Assert.assertFalse(iterator.hasNext());
+        
+        EasyMock.verify(session, listener);
+    }
+    
+    /**
+     * Tests that the session is cleared before a lookahead iterator fetches
+     * the first element of the next batch.
+     */
+    @Test
+    public void lookahead() {
+        final List<String> events = new ArrayList<String>();
+        final List<String> rows = new AbstractList<String>() {
+            
+            @Override
+            public String get(int index) {
+                events.add("fetch " + index);
+                return "row " + index;
+            }
+            
+            @Override
+            public int size() {
+                return 3;
+            }
+            
+        };
+        
+        final Session session = EasyMock.createMock(Session.class);
+        session.clear();
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Void>() {
+            
+            @Override
+            public Void answer() {
+                events.add("clear");
+                return null;
+            }
+            
+        }).times(2);
+        EasyMock.replay(session);
+        
+        final Iterator<String> iterator = new SessionClearingIterator<String>(
+            new ForwardOnlyScrollableResultsIterator<String>(new MockScrollableResults(rows)), session, 2
+        );
+        
+        while (iterator.hasNext()) {
+            events.add("use " + iterator.next());
+        }
+        
+        Assert.assertEquals(Arrays.asList(
+            "fetch 0", "use row 0", "fetch 1", "use row 1", "clear", "fetch 2", "use row 2", "clear"
+        ), events);
+        EasyMock.verify(session);
+    }
+    
+}